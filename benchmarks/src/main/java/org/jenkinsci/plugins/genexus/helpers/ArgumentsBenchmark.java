@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.helpers;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.genexus.server.GXSConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author jlr
+ *
+ * Construction of MSBuild and TeamDev command lines.
+ *
+ * No credentials are used, as looking them up requires a running Jenkins.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArgumentsBenchmark {
+
+    private final GXSConnection connection = new GXSConnection("https://sandbox.genexusserver.com/v15", null, "BenchmarkKB", "Version 2");
+    private final Date from = new Date(1514764800000L);
+    private final Date to = new Date(1522159509000L);
+
+    @Benchmark
+    public String msBuildArgs() {
+        MsBuildArgsHelper argsHelper = new MsBuildArgsHelper("Checkout", "Update");
+        argsHelper.addNoLogo();
+        argsHelper.addProperty("GX_PROGRAM_DIR", "C:\\Program Files (x86)\\GeneXus\\GeneXus15");
+        argsHelper.addProperty("ServerUrl", connection.getServerURL());
+        argsHelper.addProperty("ServerKbAlias", connection.getKbName());
+        argsHelper.addProperty("ServerKbVersion", connection.getKbVersion());
+        argsHelper.addProperty("WorkingDirectory", "C:\\Jenkins\\workspace\\job\\BenchmarkKB");
+        argsHelper.addProperty("DbaseServerInstance", "(localdb)\\MSSQLLocalDB");
+        argsHelper.addProperty("CreateDbInKbFolder", true);
+        return argsHelper.toString();
+    }
+
+    @Benchmark
+    public String teamDevArgs() {
+        return new TeamDevArgumentListBuilder("C:\\Program Files (x86)\\GeneXus\\GeneXus15", connection, from, to, true).toString();
+    }
+}
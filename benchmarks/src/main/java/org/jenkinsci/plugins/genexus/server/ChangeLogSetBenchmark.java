@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *
+ * @author jlr
+ *
+ * Preparation of change sets once the log entries have been parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeLogSetBenchmark {
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int entries;
+
+    private final Random random = new Random(42);
+    private List<LogEntry> logs;
+    private List<LogEntry> shuffledLogs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // one duplicated entry every 50, as when TeamDev histories overlap
+        logs = SyntheticHistory.createEntries(entries, 50);
+    }
+
+    /**
+     * Every invocation gets the entries in a new random order, as sorting
+     * what a previous invocation already sorted would not measure much.
+     */
+    @Setup(Level.Invocation)
+    public void shuffle() {
+        shuffledLogs = new ArrayList<>(logs);
+        Collections.shuffle(shuffledLogs, random);
+    }
+
+    /**
+     * Removal of duplicates and sorting.
+     */
+    @Benchmark
+    public GXSChangeLogSet prepareChangeLogEntries() {
+        return new GXSChangeLogSet(null, null, shuffledLogs);
+    }
+
+    @Benchmark
+    public void finishEntries(Blackhole blackhole) {
+        for (LogEntry log : logs) {
+            log.finish();
+            blackhole.consume(log);
+        }
+    }
+}
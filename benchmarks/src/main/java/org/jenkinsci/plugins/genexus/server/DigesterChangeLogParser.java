@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import hudson.util.Digester2;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.apache.commons.digester.Digester;
+import org.apache.commons.digester.Rule;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.Action;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * @author jlr
+ *
+ * The Digester based changelog parser the plugin used before the StAX one,
+ * kept as the baseline for {@link ChangeLogParserBenchmark}. Dates are parsed
+ * with a new SimpleDateFormat for each entry, as they were then.
+ *
+ * Users are not looked up while parsing (as the old LogEntry did through
+ * User.get()), since that needs a running Jenkins: the old parser was
+ * slower than what this one measures.
+ */
+final class DigesterChangeLogParser {
+
+    private DigesterChangeLogParser() {
+    }
+
+    static List<LogEntry> parse(InputStream stream) throws IOException {
+        ArrayList<LogEntry> logs = new ArrayList<>();
+        Digester digester = createDigester(logs);
+
+        try {
+            digester.parse(new InputSource(stream));
+        } catch (SAXException e) {
+            throw new IOException("Failed to parse", e);
+        }
+
+        logs.forEach((logEntry) -> logEntry.finish());
+
+        return logs;
+    }
+
+    private static Digester createDigester(ArrayList<LogEntry> logs) {
+        Digester digester = new Digester2();
+        digester.push(logs);
+
+        digester.addObjectCreate("*/logentry", LogEntry.class);
+        digester.addSetProperties("*/logentry");
+        digester.addBeanPropertySetter("*/logentry/author", "user");
+        digester.addRule("*/logentry/date", new UTCDateRule());
+        digester.addBeanPropertySetter("*/logentry/msg");
+        digester.addSetNext("*/logentry", "add");
+
+        digester.addObjectCreate("*/logentry/actions/action", Action.class);
+        digester.addSetProperties("*/logentry/actions/action");
+        digester.addBeanPropertySetter("*/logentry/actions/action/objectGuid");
+        digester.addBeanPropertySetter("*/logentry/actions/action/objectType");
+        digester.addBeanPropertySetter("*/logentry/actions/action/objectTypeGuid");
+        digester.addBeanPropertySetter("*/logentry/actions/action/objectName");
+        digester.addBeanPropertySetter("*/logentry/actions/action/objectDescription");
+        digester.addSetNext("*/logentry/actions/action", "addAction");
+
+        return digester;
+    }
+
+    /**
+     * Sets the date of the entry on top of the stack, as the old
+     * DateUtils.fromUTCstring did.
+     */
+    private static final class UTCDateRule extends Rule {
+
+        @Override
+        public void body(String namespace, String name, String text) throws Exception {
+            SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss", Locale.ROOT);
+            sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+            Date parsedDate;
+            try {
+                parsedDate = sdf.parse(text.trim());
+            } catch (ParseException ex) {
+                parsedDate = new Date(0);
+            }
+
+            ((LogEntry) getDigester().peek()).setDate(parsedDate);
+        }
+    }
+}
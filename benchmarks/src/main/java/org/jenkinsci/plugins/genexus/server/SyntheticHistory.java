@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.Action;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+
+/**
+ *
+ * @author jlr
+ *
+ * Synthetic TeamDev histories for the benchmarks. Fixed seeds, so that runs
+ * of different releases work on the same data.
+ */
+final class SyntheticHistory {
+
+    private static final String[] ACTION_TYPES = {"Modified", "Inserted", "Deleted"};
+    private static final String[] OBJECT_TYPES = {"Transaction", "Procedure", "WebPanel", "DataProvider", "SDT"};
+    private static final String[] USERS = {"jlr", "GeneXus\\jdoe", "GeneXus\\asmith", "local\\builder"};
+    private static final long START = 1514764800000L; // 2018-01-01
+
+    private SyntheticHistory() {
+    }
+
+    /**
+     * @param entries number of log entries
+     * @param duplicates every how many entries one is repeated (0 for none),
+     * as happens when TeamDev histories overlap
+     */
+    static List<LogEntry> createEntries(int entries, int duplicates) {
+        Random random = new Random(entries);
+        List<LogEntry> logs = new ArrayList<>(entries);
+        for (int i = 1; i <= entries; i++) {
+            LogEntry entry = createEntry(random, i);
+            logs.add(entry);
+            if (duplicates > 0 && i % duplicates == 0) {
+                logs.add(createEntry(new Random(i), i));
+            }
+        }
+
+        // TeamDev lists recent changes first
+        List<LogEntry> reversed = new ArrayList<>(logs.size());
+        for (int i = logs.size() - 1; i >= 0; i--) {
+            reversed.add(logs.get(i));
+        }
+        return reversed;
+    }
+
+    private static LogEntry createEntry(Random random, int revision) {
+        LogEntry entry = new LogEntry();
+        entry.setRevision(revision);
+        entry.setUser(USERS[random.nextInt(USERS.length)]);
+        entry.setDate(new Date(START + revision * 60000L));
+        entry.setMsg("Change number " + revision + " of the synthetic history");
+
+        int actions = 1 + random.nextInt(8);
+        for (int j = 0; j < actions; j++) {
+            Action action = new Action();
+            action.setType(ACTION_TYPES[random.nextInt(ACTION_TYPES.length)]);
+            action.setObjectGuid(new UUID(random.nextLong(), random.nextLong()).toString());
+            action.setObjectType(OBJECT_TYPES[random.nextInt(OBJECT_TYPES.length)]);
+            action.setObjectTypeGuid(new UUID(random.nextLong(), random.nextLong()).toString());
+            action.setObjectName("Object" + random.nextInt(5000));
+            action.setObjectDescription("Synthetic object " + j + " of revision " + revision);
+            entry.addAction(action);
+        }
+
+        return entry;
+    }
+
+    /**
+     * @return the history in the XML format of "TeamDev history /x /utc"
+     */
+    static byte[] createXml(int entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(entries * 1024);
+        out.write(GXSChangeLogWriter.LOG_START);
+        for (LogEntry entry : createEntries(entries, 0)) {
+            out.write(GXSChangeLogWriter.toXml(entry));
+        }
+        out.write(GXSChangeLogWriter.LOG_END);
+        return out.toByteArray();
+    }
+}
@@ -27,12 +27,15 @@ import hudson.EnvVars;
 import hudson.Extension;
 import hudson.Launcher;
 import hudson.Util;
+import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.EnvironmentSpecific;
 import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.plugins.msbuild.MsBuildInstallation;
+import hudson.slaves.ComputerListener;
 import hudson.slaves.NodeSpecific;
+import hudson.slaves.OfflineCause;
 import hudson.tools.ToolDescriptor;
 import hudson.tools.ToolInstallation;
 import hudson.tools.ToolProperty;
@@ -41,7 +44,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.model.Jenkins;
 import jenkins.security.MasterToSlaveCallable;
 import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
@@ -55,6 +63,12 @@ import org.kohsuke.stapler.StaplerRequest;
 public final class GeneXusInstallation extends ToolInstallation
         implements NodeSpecific<GeneXusInstallation>, EnvironmentSpecific<GeneXusInstallation>, Serializable {
 
+    /**
+     * Homes and file paths of installations, as resolved on each node (by
+     * node name, the master being "")
+     */
+    private static final ConcurrentMap<String, ConcurrentMap<String, String>> RESOLVED_PATHS = new ConcurrentHashMap<>();
+
     private final String msBuildInstallationId;
 
     public GeneXusInstallation(String name, String home, String msBuildInstallationId) {
@@ -89,7 +103,17 @@ public final class GeneXusInstallation extends ToolInstallation
         
     @Override
     public GeneXusInstallation forNode(Node node, TaskListener log) throws IOException, InterruptedException {
-        return new GeneXusInstallation(getName(), translateFor(node, log), getMsBuildInstallationId());
+        Map<String, String> resolved = getResolvedPaths(node.getNodeName());
+        String key = "home\n" + getName() + "\n" + getHome();
+        String home = resolved.get(key);
+        if (home == null) {
+            home = translateFor(node, log);
+            if (home != null) {
+                resolved.put(key, home);
+            }
+        }
+
+        return new GeneXusInstallation(getName(), home, getMsBuildInstallationId());
     }
 
     @Override
@@ -101,7 +125,35 @@ public final class GeneXusInstallation extends ToolInstallation
         return getFilePath(executable.getName(launcher.isUnix()), launcher);
     }
     
+    /**
+     * Gets the path of a file in the installation folder, as seen by the node
+     * the launcher runs on. Paths that are found are remembered until the
+     * node reconnects.
+     *
+     * @return null if there is no such file
+     */
     public String getFilePath(final String fileName, Launcher launcher) throws IOException, InterruptedException { 
+        Computer computer = getComputer(launcher);
+        if (computer == null) {
+            return findFilePath(fileName, launcher);
+        }
+
+        Map<String, String> resolved = getResolvedPaths(computer.getName());
+        String key = "file\n" + getHome() + "\n" + fileName;
+        String path = resolved.get(key);
+        if (path == null) {
+            // missing files are not remembered, so that they are found
+            // as soon as they're installed
+            path = findFilePath(fileName, launcher);
+            if (path != null) {
+                resolved.put(key, path);
+            }
+        }
+
+        return path;
+    }
+
+    private String findFilePath(final String fileName, Launcher launcher) throws IOException, InterruptedException { 
         return launcher.getChannel().call(new MasterToSlaveCallable<String, IOException>() { 
             @Override
             public String call() throws IOException { 
@@ -132,21 +184,65 @@ public final class GeneXusInstallation extends ToolInstallation
         if (installationId == null)
             return null;
 
-        for( GeneXusInstallation i : getInstallations() ) {
-            if(installationId.equals(i.getName()))
-                return i;
+        DescriptorImpl descriptor = ToolInstallation.all().get(DescriptorImpl.class);
+        if (descriptor == null) {
+            return null;
         }
-        
+
+        return descriptor.getInstallation(installationId);
+    }
+
+    private static Computer getComputer(Launcher launcher) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null || launcher.getChannel() == null) {
+            return null;
+        }
+
+        for (Computer computer : jenkins.getComputers()) {
+            if (computer.getChannel() == launcher.getChannel()) {
+                return computer;
+            }
+        }
+
         return null;
     }
+
+    private static Map<String, String> getResolvedPaths(String nodeName) {
+        return RESOLVED_PATHS.computeIfAbsent(nodeName, (key) -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Forgets what was resolved on a node when it connects or disconnects,
+     * as it may have been changed in the meantime.
+     */
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            RESOLVED_PATHS.remove(c.getName());
+        }
+
+        @Override
+        public void onOffline(Computer c, OfflineCause cause) {
+            RESOLVED_PATHS.remove(c.getName());
+        }
+    }
     
     @Extension
     @Symbol("genexus")
     public static class DescriptorImpl extends ToolDescriptor<GeneXusInstallation> {
+
+        /**
+         * Installations by name. Rebuilt whenever installations are set, so
+         * they're not looked for in the configuration file every time.
+         */
+        private transient volatile Map<String, GeneXusInstallation> installationsByName = Collections.emptyMap();
         
         public DescriptorImpl() {
             super();
             load();
+            indexInstallations();
         }
 
         @Override
@@ -154,18 +250,27 @@ public final class GeneXusInstallation extends ToolInstallation
             return "GeneXus";
         }
         
-        @Override
-        public GeneXusInstallation[] getInstallations() {
-            load();
-            return super.getInstallations();
-        }
-
         @Override
         public void setInstallations(GeneXusInstallation... installations) {
             super.setInstallations(installations);
+            indexInstallations();
+            RESOLVED_PATHS.clear();
             save();
         }
 
+        public GeneXusInstallation getInstallation(String name) {
+            return installationsByName.get(name);
+        }
+
+        private void indexInstallations() {
+            Map<String, GeneXusInstallation> byName = new HashMap<>();
+            for (GeneXusInstallation installation : super.getInstallations()) {
+                // first one wins, as it used to be when looking them up
+                byName.putIfAbsent(installation.getName(), installation);
+            }
+            installationsByName = byName;
+        }
+
         @Override 
         public boolean configure(StaplerRequest req, JSONObject json) throws FormException { 
             super.configure(req, json); 
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.builders;
+
+import hudson.FilePath;
+import hudson.Util;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.genexus.GeneXusInstallation;
+import org.jenkinsci.plugins.genexus.helpers.MsBuildArgsHelper;
+import org.jenkinsci.plugins.genexus.server.GXSInfo;
+
+/**
+ *
+ * @author jlr
+ *
+ * Remembers, in the KB folder itself, what was last built successfully for
+ * each environment of the KB: a key made of the KB revision, the GeneXus
+ * installation and the build arguments. When a build would get the same key,
+ * the environment is already built with exactly those inputs and the build
+ * can be skipped (eg: re-runs or downstream builds of the same revision).
+ *
+ * Generated outputs are not copied anywhere: they stay in the KB folder,
+ * along with the KB state that says they are up to date. Removing the KB
+ * folder (eg: a new checkout) removes the records too.
+ */
+final class GeneXusBuildCache {
+
+    private static final String FOLDER_NAME = ".jenkins-build-cache";
+
+    private GeneXusBuildCache() {
+    }
+
+    /**
+     * @return the key of a build with the given inputs
+     */
+    static String computeKey(GXSInfo revision, GeneXusInstallation installation, MsBuildArgsHelper args) {
+        StringBuilder key = new StringBuilder();
+        key.append(revision.serverUrl).append('\n')
+                .append(revision.kbName).append('\n')
+                .append(StringUtils.trimToEmpty(revision.kbVersion)).append('\n')
+                .append(revision.revision).append('\n')
+                .append(installation.getName()).append('\n')
+                .append(installation.getHome()).append('\n')
+                .append(StringUtils.trimToEmpty(installation.getMsBuildInstallationId())).append('\n')
+                .append(args.toNormalizedString());
+        return Util.getDigestOf(key.toString());
+    }
+
+    /**
+     * @return true if the environment was last built successfully with the
+     * given key
+     */
+    static boolean isBuilt(FilePath kbFolder, String environment, String key) throws IOException, InterruptedException {
+        FilePath record = getRecord(kbFolder, environment);
+        return record.exists() && key.equals(record.readToString().trim());
+    }
+
+    /**
+     * Forgets what was built for an environment, before building it again.
+     */
+    static void forget(FilePath kbFolder, String environment) throws IOException, InterruptedException {
+        FilePath record = getRecord(kbFolder, environment);
+        if (record.exists()) {
+            record.delete();
+        }
+    }
+
+    static void record(FilePath kbFolder, String environment, String key) throws IOException, InterruptedException {
+        FilePath record = getRecord(kbFolder, environment);
+        record.getParent().mkdirs();
+        record.write(key, StandardCharsets.UTF_8.name());
+    }
+
+    private static FilePath getRecord(FilePath kbFolder, String environment) {
+        String name = environment.isEmpty() ? "default" : Util.rawEncode(environment);
+        return kbFolder.child(FOLDER_NAME).child(name + ".key");
+    }
+}
@@ -24,19 +24,51 @@
 package org.jenkinsci.plugins.genexus.builders;
 
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.StreamBuildListener;
 import hudson.plugins.msbuild.MsBuildBuilder;
+import hudson.scm.ChangeLogSet;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
+import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.genexus.GeneXusInstallation;
 import org.jenkinsci.plugins.genexus.helpers.MsBuildArgsHelper;
+import org.jenkinsci.plugins.genexus.metrics.Phase;
+import org.jenkinsci.plugins.genexus.metrics.PhaseTimer;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet;
+import org.jenkinsci.plugins.genexus.server.GXSInfo;
+import org.jenkinsci.plugins.genexus.server.GeneXusServerSCM;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.export.Exported;
 
 //TODO: 
@@ -58,15 +90,27 @@ public class GeneXusBuilder extends Builder {
     private final String kbVersion;
     private final String kbEnvironment;
     private final boolean forceRebuild;
+    private final boolean skipIfUnchanged;
+    private final int maxParallelBuilds;
 
 
-    @DataBoundConstructor
     public GeneXusBuilder(String gxInstallationId, String kbPath, String kbVersion, String kbEnvironment, boolean forceRebuild) {
+        this(gxInstallationId, kbPath, kbVersion, kbEnvironment, forceRebuild, false);
+    }
+
+    public GeneXusBuilder(String gxInstallationId, String kbPath, String kbVersion, String kbEnvironment, boolean forceRebuild, boolean skipIfUnchanged) {
+        this(gxInstallationId, kbPath, kbVersion, kbEnvironment, forceRebuild, skipIfUnchanged, 1);
+    }
+
+    @DataBoundConstructor
+    public GeneXusBuilder(String gxInstallationId, String kbPath, String kbVersion, String kbEnvironment, boolean forceRebuild, boolean skipIfUnchanged, int maxParallelBuilds) {
         this.gxInstallationId = gxInstallationId;
         this.kbPath = kbPath;
         this.kbVersion = kbVersion;
         this.kbEnvironment = kbEnvironment;
         this.forceRebuild = forceRebuild;
+        this.skipIfUnchanged = skipIfUnchanged;
+        this.maxParallelBuilds = maxParallelBuilds;
     }
 
     @Exported
@@ -94,6 +138,37 @@ public class GeneXusBuilder extends Builder {
         return forceRebuild;
     }
     
+    @Exported
+    public boolean getSkipIfUnchanged() {
+        return skipIfUnchanged;
+    }
+    
+    @Exported
+    public int getMaxParallelBuilds() {
+        // configurations saved before this setting existed build one
+        // environment at a time
+        return Math.max(maxParallelBuilds, 1);
+    }
+    
+    /**
+     * @return the environments to build, in the order they were entered.
+     * A blank name stands for the KB's default environment.
+     */
+    public List<String> getKbEnvironmentList() {
+        Set<String> environments = new LinkedHashSet<>();
+        for (String environment : StringUtils.split(StringUtils.defaultString(kbEnvironment), ",\n")) {
+            if (StringUtils.isNotBlank(environment)) {
+                environments.add(environment.trim());
+            }
+        }
+        
+        if (environments.isEmpty()) {
+            environments.add("");
+        }
+        
+        return new ArrayList<>(environments);
+    }
+    
     private GeneXusInstallation getGeneXusInstallation() {
         return GeneXusInstallation.getInstallation(gxInstallationId);
     }
@@ -120,26 +195,272 @@ public class GeneXusBuilder extends Builder {
             listener.fatalError("Could not find msbuild file: " + msBuildFile);
             return false;
         }
-        
+
+        // environments already built with the same inputs in this KB folder
+        // are skipped, and so are the ones built with the same inputs from
+        // the previous revision when no objects changed since then. Nothing
+        // is recorded in the KB folder unless skipping is enabled.
+        GXSInfo revision = skipIfUnchanged ? getBuiltRevision(build) : null;
+        FilePath kbFolder = revision != null ? getKbFolder(build, listener) : null;
+        boolean canSkip = kbFolder != null && !forceRebuild;
+        GXSInfo unchangedRevision = canSkip && !hasChanges(build, listener) ? getBuiltRevision(build.getPreviousBuild()) : null;
+        Map<String, String> cacheKeys = new LinkedHashMap<>();
+        for (String environment : getKbEnvironmentList()) {
+            MsBuildArgsHelper args = createBuildArgs(installation, environment);
+            String cacheKey = kbFolder != null ? GeneXusBuildCache.computeKey(revision, installation, args) : null;
+            if (canSkip && GeneXusBuildCache.isBuilt(kbFolder, environment, cacheKey)) {
+                listener.getLogger().println("Revision " + revision.revision + " is already built for "
+                        + getEnvironmentDisplayName(environment) + ", skipping it");
+                continue;
+            }
+            if (unchangedRevision != null && GeneXusBuildCache.isBuilt(kbFolder, environment, GeneXusBuildCache.computeKey(unchangedRevision, installation, args))) {
+                listener.getLogger().println("No GeneXus objects changed since revision " + unchangedRevision.revision + " was built for "
+                        + getEnvironmentDisplayName(environment) + ", skipping it");
+                // the environment is as good as built from this revision
+                GeneXusBuildCache.record(kbFolder, environment, cacheKey);
+                continue;
+            }
+            cacheKeys.put(environment, cacheKey);
+        }
+
+        if (cacheKeys.isEmpty()) {
+            return true;
+        }
+
+        try (PhaseTimer timer = PhaseTimer.start(Phase.BUILD, build, null, kbPath)) {
+            boolean success = cacheKeys.size() == 1
+                    ? performEnvironment(build, launcher, listener, installation, msBuildFile, cacheKeys.keySet().iterator().next(), kbFolder, cacheKeys.values().iterator().next())
+                    : performSeveral(build, launcher, listener, installation, msBuildFile, kbFolder, cacheKeys);
+            if (success) {
+                timer.succeeded();
+            }
+            return success;
+        }
+    }
+
+    /**
+     * Builds several environments, running up to {@link #getMaxParallelBuilds()}
+     * of them at the same time. Each environment is logged to a file of its
+     * own in the build folder, which is copied to the console once that
+     * environment is done so that outputs don't get mixed.
+     *
+     * The plugin can't tell where an environment generates its files, so it's
+     * up to the job to build in parallel only environments that don't share
+     * generated folders. By default they're built one after the other.
+     */
+    private boolean performSeveral(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, GeneXusInstallation installation, String msBuildFile, FilePath kbFolder, Map<String, String> cacheKeys) throws IOException, InterruptedException {
+        List<String> environments = new ArrayList<>(cacheKeys.keySet());
+        int threads = Math.min(getMaxParallelBuilds(), environments.size());
+        listener.getLogger().println("Building environments " + String.join(", ", environments)
+                + " (" + threads + " at a time)");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<String, Future<Boolean>> results = new LinkedHashMap<>();
+            for (String environment : environments) {
+                File logFile = getEnvironmentLogFile(build, environment);
+                results.put(environment, executor.submit(() -> {
+                    boolean success;
+                    try (OutputStream logStream = new FileOutputStream(logFile)) {
+                        StreamBuildListener environmentListener = new StreamBuildListener(logStream, Charset.defaultCharset());
+                        success = performEnvironment(build, launcher, environmentListener, installation, msBuildFile, environment, kbFolder, cacheKeys.get(environment));
+                    }
+
+                    synchronized (listener) {
+                        listener.getLogger().println("---- " + getEnvironmentDisplayName(environment) + " ----");
+                        Files.copy(logFile.toPath(), listener.getLogger());
+                        listener.getLogger().println("---- " + getEnvironmentDisplayName(environment)
+                                + (success ? " built successfully" : " failed") + " ----");
+                    }
+                    return success;
+                }));
+            }
+
+            boolean success = true;
+            for (Map.Entry<String, Future<Boolean>> result : results.entrySet()) {
+                try {
+                    if (!result.getValue().get()) {
+                        success = false;
+                    }
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    listener.error("Error building " + getEnvironmentDisplayName(result.getKey()) + ": " + cause.getMessage());
+                    success = false;
+                }
+            }
+
+            return success;
+        } finally {
+            // kills running builds if we were interrupted
+            executor.shutdownNow();
+        }
+    }
+
+    private static File getEnvironmentLogFile(AbstractBuild<?, ?> build, String environment) {
+        String name = environment.isEmpty() ? "default" : Util.rawEncode(environment);
+        return new File(build.getRootDir(), "genexus-build-" + name + ".log");
+    }
+
+    /**
+     * Builds one environment, keeping the build cache of the KB folder up to
+     * date.
+     *
+     * @param kbFolder null if builds are not cached
+     * @param cacheKey null if builds are not cached
+     */
+    private boolean performEnvironment(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, GeneXusInstallation installation, String msBuildFile, String environment, FilePath kbFolder, String cacheKey) throws IOException, InterruptedException {
+        if (cacheKey != null) {
+            // an interrupted build must not look like a finished one
+            GeneXusBuildCache.forget(kbFolder, environment);
+        }
+
+        boolean success = runMsBuild(build, launcher, listener, installation, msBuildFile, environment);
+        if (success && cacheKey != null) {
+            GeneXusBuildCache.record(kbFolder, environment, cacheKey);
+        }
+
+        return success;
+    }
+
+    /**
+     * Runs the MSBuild Build target for one environment.
+     */
+    boolean runMsBuild(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, GeneXusInstallation installation, String msBuildFile, String environment) throws IOException, InterruptedException {
+        return createBuildAction(installation, msBuildFile, environment).perform(build, launcher, listener);
+    }
+
+    /**
+     * @return the KB folder, with variables expanded as MSBuild gets them, or
+     * null if there's no workspace
+     */
+    private FilePath getKbFolder(AbstractBuild<?, ?> build, BuildListener listener) throws IOException, InterruptedException {
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            return null;
+        }
+
+        return workspace.child(build.getEnvironment(listener).expand(kbPath));
+    }
+
+    private MsBuildArgsHelper createBuildArgs(GeneXusInstallation installation, String environment) {
         MsBuildArgsHelper argsHelper = new MsBuildArgsHelper("Build");
         argsHelper.addNoLogo();
         argsHelper.addProperty("GX_PROGRAM_DIR", installation.getHome());
         argsHelper.addProperty("WorkingDirectory", kbPath);
         argsHelper.addProperty("WorkingVersion", kbVersion);
-        argsHelper.addProperty("WorkingEnvironment", kbEnvironment);
+        argsHelper.addProperty("WorkingEnvironment", environment);
         argsHelper.addProperty("ForceRebuild", forceRebuild);
-        
-        MsBuildBuilder builder = new MsBuildBuilder(
+        return argsHelper;
+    }
+
+    private MsBuildBuilder createBuildAction(GeneXusInstallation installation, String msBuildFile, String environment) {
+        return new MsBuildBuilder(
                 installation.getMsBuildInstallationId(),
                 msBuildFile,
-                argsHelper.toString(),
+                createBuildArgs(installation, environment).toString(),
                 true,
                 false,
                 true,
                 false
         );
+    }
 
-        return builder.perform(build, launcher, listener);
+    private static String getEnvironmentDisplayName(String environment) {
+        return environment.isEmpty() ? "default environment" : "environment " + environment;
+    }
+
+    /**
+     * Works out whether any GeneXus object changed since the previous build.
+     * GeneXus itself only builds the objects affected by changes, so the only
+     * build that can be safely avoided is the one with no changes at all
+     * (and no changes to the build configuration, which the caller checks).
+     *
+     * Only the number of actions is needed to tell, so the actions themselves
+     * are read just to list a few of the changed objects.
+     *
+     * @return false only if it's known for sure that nothing changed
+     */
+    private static boolean hasChanges(AbstractBuild<?, ?> build, BuildListener listener) {
+        Run<?, ?> previousBuild = build.getPreviousBuild();
+        if (previousBuild == null || previousBuild.getResult() != Result.SUCCESS) {
+            // the KB may have pending changes from a failed build
+            return true;
+        }
+
+        List<? extends ChangeLogSet<? extends ChangeLogSet.Entry>> changeSets = build.getChangeSets();
+        if (changeSets.isEmpty()) {
+            // unknown changes
+            return true;
+        }
+
+        long actionsCount = 0;
+        for (ChangeLogSet<? extends ChangeLogSet.Entry> changeSet : changeSets) {
+            if (!(changeSet instanceof GXSChangeLogSet)) {
+                // changes from other sources may affect the KB in ways we
+                // can't tell
+                return true;
+            }
+
+            actionsCount += ((GXSChangeLogSet) changeSet).getTotalActionsCount();
+        }
+
+        if (actionsCount == 0) {
+            return false;
+        }
+
+        listener.getLogger().println(actionsCount + " changes to GeneXus objects since the last build");
+        Set<String> changedObjects = new TreeSet<>();
+        listing:
+        for (ChangeLogSet<? extends ChangeLogSet.Entry> changeSet : changeSets) {
+            for (GXSChangeLogSet.LogEntry entry : ((GXSChangeLogSet) changeSet).getLogs()) {
+                for (GXSChangeLogSet.Action action : entry.getActions()) {
+                    changedObjects.add(action.getObjectType() + " " + action.getObjectName());
+                    if (changedObjects.size() > MAX_LISTED_OBJECTS) {
+                        break listing;
+                    }
+                }
+            }
+        }
+
+        int listed = 0;
+        for (String changedObject : changedObjects) {
+            if (listed++ == MAX_LISTED_OBJECTS) {
+                listener.getLogger().println("  ...");
+                break;
+            }
+            listener.getLogger().println("  " + changedObject);
+        }
+
+        return true;
+    }
+
+    private static final int MAX_LISTED_OBJECTS = 50;
+
+    /**
+     * @return the revision the build checked out of the KB version being
+     * built, or null if it's not known
+     */
+    private GXSInfo getBuiltRevision(Run<?, ?> build) {
+        if (build == null) {
+            return null;
+        }
+
+        try {
+            GXSInfo revision = GeneXusServerSCM.getRevision(build);
+            if (revision == null || revision.revision <= 0) {
+                return null;
+            }
+
+            // the revision file only has the main version of the SCM
+            if (!StringUtils.trimToEmpty(revision.kbVersion).equalsIgnoreCase(StringUtils.trimToEmpty(kbVersion))) {
+                return null;
+            }
+
+            return revision;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to read revision of " + build, ex);
+            return null;
+        }
     }
 
     @Override
@@ -164,9 +485,15 @@ public class GeneXusBuilder extends Builder {
             return items;
         }
         
+        public FormValidation doCheckMaxParallelBuilds(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
+
         @Override
         public String getDisplayName() {
             return "Build GeneXus KB";
         }
     }
+
+    private static final Logger LOGGER = Logger.getLogger(GeneXusBuilder.class.getName());
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.helpers;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ *
+ * @author jlr
+ *
+ * Caches the credentials found for a given id and URI, so that the whole
+ * credentials store is not searched every time a GXserver (or SQL Server)
+ * is accessed.
+ *
+ * The cache is cleared whenever credentials may have changed (ie: the
+ * global credentials or a folder are saved). Entries also expire after a
+ * while, in case credentials are changed by other means.
+ */
+public final class CredentialsCache {
+
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final ConcurrentMap<Key, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private CredentialsCache() {
+    }
+
+    /**
+     * Looks for credentials available to any item.
+     *
+     * @param credentialsId id of the credentials
+     * @param uri where the credentials are to be used
+     * @return null if there are no such credentials
+     */
+    @CheckForNull
+    public static StandardCredentials lookup(@CheckForNull String credentialsId, String uri) {
+        return lookup(null, credentialsId, uri);
+    }
+
+    /**
+     * Looks for credentials available to a given item.
+     *
+     * @param context item using the credentials, or null for any item
+     * @param credentialsId id of the credentials
+     * @param uri where the credentials are to be used
+     * @return null if there are no such credentials
+     */
+    @CheckForNull
+    public static StandardCredentials lookup(@CheckForNull Item context, @CheckForNull String credentialsId, String uri) {
+        if (StringUtils.isEmpty(credentialsId)) {
+            return null;
+        }
+
+        Key key = new Key(context != null ? context.getFullName() : null, credentialsId, uri);
+        long now = System.currentTimeMillis();
+        Entry entry = CACHE.get(key);
+        if (entry != null && now - entry.loadedAt <= TTL_MILLIS) {
+            return entry.credentials;
+        }
+
+        List<DomainRequirement> requirements = URIRequirementBuilder.fromUri(uri).build();
+        List<StandardCredentials> candidates = context != null
+                ? CredentialsProvider.lookupCredentials(StandardCredentials.class, context, ACL.SYSTEM, requirements)
+                : CredentialsProvider.lookupCredentials(StandardCredentials.class, Jenkins.getInstance(), ACL.SYSTEM, requirements);
+        StandardCredentials credentials = CredentialsMatchers.firstOrNull(candidates, CredentialsMatchers.withId(credentialsId));
+
+        CACHE.put(key, new Entry(credentials, now));
+        return credentials;
+    }
+
+    /**
+     * Forgets every cached credential.
+     */
+    public static void invalidate() {
+        CACHE.clear();
+    }
+
+    private static final class Key {
+
+        private final String context;
+        private final String credentialsId;
+        private final String uri;
+
+        Key(String context, String credentialsId, String uri) {
+            this.context = context;
+            this.credentialsId = credentialsId;
+            this.uri = uri;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return Objects.equals(context, other.context)
+                    && credentialsId.equals(other.credentialsId)
+                    && Objects.equals(uri, other.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(context, credentialsId, uri);
+        }
+    }
+
+    private static final class Entry {
+
+        private final StandardCredentials credentials;
+        private final long loadedAt;
+
+        Entry(StandardCredentials credentials, long loadedAt) {
+            this.credentials = credentials;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Global credentials are saved by {@link SystemCredentialsProvider};
+     * folder credentials, along with the folder.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider || o instanceof ItemGroup) {
+                invalidate();
+            }
+        }
+    }
+}
@@ -24,13 +24,18 @@
 package org.jenkinsci.plugins.genexus.helpers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.TreeMap;
 
 /**
  *
  * @author jlr
+ *
+ * Builds MSBuild command line arguments. Arguments are written in the order
+ * they were added, so the same calls always give the same command line.
  */
 public final class MsBuildArgsHelper {
 
@@ -42,8 +47,8 @@ public final class MsBuildArgsHelper {
     private static final String QUOTE = "\"";
 
     private final ArrayList<String> simpleParms = new ArrayList<>();
-    private final Properties valuedParms = new Properties();
-    private final HashMap<String, ArrayList<String>> multiValuedParms = new HashMap<>();
+    private final Map<String, String> valuedParms = new LinkedHashMap<>();
+    private final Map<String, List<String>> multiValuedParms = new LinkedHashMap<>();
 
     public MsBuildArgsHelper(String... targetNames) {
         for (String targetName : targetNames) {
@@ -76,17 +81,38 @@ public final class MsBuildArgsHelper {
     }
 
     public void addMultiValueParm(String parmName, String parmValue) {
-        ArrayList<String> values = multiValuedParms.get(parmName);
-        if (values == null) {
-            values = new ArrayList<>();
-            multiValuedParms.put(parmName, values);
-        }
-
-        values.add(parmValue);
+        multiValuedParms.computeIfAbsent(parmName, (key) -> new ArrayList<>()).add(parmValue);
     }
 
     @Override
     public String toString() {
+        return toString(simpleParms, valuedParms, multiValuedParms);
+    }
+
+    /**
+     * Gets the arguments in a way that doesn't depend on the order in which
+     * they were added (except for targets, whose order matters), so that
+     * equivalent arguments can be compared.
+     *
+     * @return the arguments, sorted by name
+     */
+    public String toNormalizedString() {
+        List<String> sortedSimpleParms = new ArrayList<>(simpleParms);
+        Collections.sort(sortedSimpleParms);
+
+        Map<String, List<String>> sortedMultiValuedParms = new TreeMap<>();
+        for (Map.Entry<String, List<String>> parm : multiValuedParms.entrySet()) {
+            List<String> values = new ArrayList<>(parm.getValue());
+            if (!parm.getKey().equals(TARGET)) {
+                Collections.sort(values);
+            }
+            sortedMultiValuedParms.put(parm.getKey(), values);
+        }
+
+        return toString(sortedSimpleParms, new TreeMap<>(valuedParms), sortedMultiValuedParms);
+    }
+
+    private static String toString(List<String> simpleParms, Map<String, String> valuedParms, Map<String, List<String>> multiValuedParms) {
         StringBuilder argsBuilder = new StringBuilder();
 
         for (String parm : simpleParms) {
@@ -94,13 +120,13 @@ public final class MsBuildArgsHelper {
                     .append(PARM_SEPARATOR);
         }
 
-        for (Map.Entry<Object, Object> parm : valuedParms.entrySet()) {
+        for (Map.Entry<String, String> parm : valuedParms.entrySet()) {
             argsBuilder.append(parm.getKey())
                     .append(parm.getValue())
                     .append(PARM_SEPARATOR);
         }
 
-        for (Map.Entry<String, ArrayList<String>> parm : multiValuedParms.entrySet()) {
+        for (Map.Entry<String, List<String>> parm : multiValuedParms.entrySet()) {
             argsBuilder.append(parm.getKey())
                     .append(String.join(VALUE_SEPARATOR, parm.getValue()))
                     .append(PARM_SEPARATOR);
@@ -24,18 +24,11 @@
 package org.jenkinsci.plugins.genexus.helpers;
 
 import org.jenkinsci.plugins.genexus.server.GXSConnection;
-import com.cloudbees.plugins.credentials.CredentialsMatchers;
-import com.cloudbees.plugins.credentials.CredentialsProvider;
-import com.cloudbees.plugins.credentials.common.StandardCredentials;
-import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
-import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
-import hudson.security.ACL;
 import hudson.util.ArgumentListBuilder;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
-import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -44,6 +37,13 @@ import org.apache.commons.lang.StringUtils;
  */
 public class TeamDevArgumentListBuilder extends ArgumentListBuilder {
 
+    /**
+     * System property (on the node where TeamDev runs) that overrides the
+     * path to the TeamDev executable, eg: to use a fake TeamDev on a machine
+     * where GeneXus is not installed.
+     */
+    public static final String EXECUTABLE_PROPERTY = TeamDevArgumentListBuilder.class.getName() + ".executable";
+
     public TeamDevArgumentListBuilder(String gxPath, GXSConnection gxsConnection) {
         this(gxPath, gxsConnection, /*fromTimestamp=*/ null, /*toTimestamp=*/ null);
     }
@@ -52,11 +52,23 @@ public class TeamDevArgumentListBuilder extends ArgumentListBuilder {
         this(gxPath, gxsConnection, fromTimestamp, toTimestamp, /*fromExcluding=*/ false);
     }
     
+    /**
+     * Looks up the credentials of the connection, which only works on the
+     * master.
+     */
     public TeamDevArgumentListBuilder(String gxPath, GXSConnection gxsConnection, Date fromTimestamp, Date toTimestamp, boolean fromExcluding) {
+        this(gxPath, gxsConnection, TeamDevCredentials.forConnection(gxsConnection), fromTimestamp, toTimestamp, fromExcluding);
+    }
+
+    /**
+     * @param credentials already looked up credentials, so that the builder
+     * can be used on any node
+     */
+    public TeamDevArgumentListBuilder(String gxPath, GXSConnection gxsConnection, TeamDevCredentials credentials, Date fromTimestamp, Date toTimestamp, boolean fromExcluding) {
         this(
                 gxPath,
                 gxsConnection.getServerURL(),
-                gxsConnection.getCredentialsId(),
+                credentials,
                 gxsConnection.getKbName(),
                 gxsConnection.getKbVersion(),
                 fromTimestamp,
@@ -64,9 +76,9 @@ public class TeamDevArgumentListBuilder extends ArgumentListBuilder {
                 fromExcluding);
     }
 
-    private TeamDevArgumentListBuilder(String gxPath, String serverURL, String credentialsId, String kbName, String kbVersion, Date fromTimestamp, Date toTimestamp, boolean fromExcluding) {
+    private TeamDevArgumentListBuilder(String gxPath, String serverURL, TeamDevCredentials credentials, String kbName, String kbVersion, Date fromTimestamp, Date toTimestamp, boolean fromExcluding) {
         
-        String pathToTeamDev = gxPath + "\\teamdev.exe";
+        String pathToTeamDev = System.getProperty(EXECUTABLE_PROPERTY, gxPath + "\\teamdev.exe");
 
         add(pathToTeamDev);
         add("history");
@@ -74,11 +86,10 @@ public class TeamDevArgumentListBuilder extends ArgumentListBuilder {
         add("/utc");
         add("/s:" + serverURL);
 
-        StandardCredentials credentials = lookupCredentials(serverURL, credentialsId);
-        if (credentials instanceof StandardUsernamePasswordCredentials) {
-            StandardUsernamePasswordCredentials upCredentials = (StandardUsernamePasswordCredentials) credentials;
-            add("/u:" + upCredentials.getUsername());
-            add("/p:" + upCredentials.getPassword().getPlainText());
+        if (credentials != null) {
+            add("/u:" + credentials.getUsername());
+            // masked, so that it doesn't show in build logs
+            addMasked("/p:" + credentials.getPassword().getPlainText());
         }
 
         add("/kb:" + kbName);
@@ -112,19 +123,6 @@ public class TeamDevArgumentListBuilder extends ArgumentListBuilder {
         return getDateFormat().format(date);
     }
     
-    private StandardCredentials lookupCredentials(String serverURL, String credentialsId) {
-        return credentialsId == null ? null
-                : CredentialsMatchers.firstOrNull(
-                        CredentialsProvider.lookupCredentials(
-                                StandardCredentials.class,
-                                Jenkins.getInstance(),
-                                ACL.SYSTEM,
-                                URIRequirementBuilder.fromUri(serverURL).build()
-                        ),
-                        CredentialsMatchers.withId(credentialsId)
-                );
-    }
-
     private Date actualFromTimestamp(Date fromTimestamp, boolean fromExcluding) {
         if (!fromExcluding)
             return fromTimestamp;
@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.helpers;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import hudson.util.Secret;
+import java.io.Serializable;
+import javax.annotation.CheckForNull;
+import org.jenkinsci.plugins.genexus.server.GXSConnection;
+
+/**
+ *
+ * @author jlr
+ *
+ * User and password for TeamDev to access a GXserver.
+ *
+ * They're looked up on the master and sent along with the tasks that run
+ * TeamDev, as credentials can't be looked up on other nodes.
+ */
+public final class TeamDevCredentials implements Serializable {
+
+    private final String username;
+    private final Secret password;
+
+    public TeamDevCredentials(String username, Secret password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * @return the credentials of the connection, or null if it has none
+     * (or they're not a user and password)
+     */
+    @CheckForNull
+    public static TeamDevCredentials forConnection(GXSConnection gxsConnection) {
+        StandardCredentials credentials = CredentialsCache.lookup(gxsConnection.getCredentialsId(), gxsConnection.getServerURL());
+        if (!(credentials instanceof StandardUsernamePasswordCredentials)) {
+            return null;
+        }
+
+        StandardUsernamePasswordCredentials upCredentials = (StandardUsernamePasswordCredentials) credentials;
+        return new TeamDevCredentials(upCredentials.getUsername(), upCredentials.getPassword());
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Secret getPassword() {
+        return password;
+    }
+
+    private static final long serialVersionUID = 1L;
+}
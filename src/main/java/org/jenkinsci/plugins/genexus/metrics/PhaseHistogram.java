@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ *
+ * @author jlr
+ *
+ * Distribution of the durations of a phase, in fixed buckets.
+ */
+@ExportedBean(defaultVisibility = 999)
+public final class PhaseHistogram {
+
+    /**
+     * Upper bound (inclusive) of each bucket, in milliseconds. An additional
+     * bucket holds anything longer.
+     */
+    static final long[] BUCKET_BOUNDS = {
+        100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000, 600000
+    };
+
+    private final Phase phase;
+    private final String key;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    PhaseHistogram(Phase phase, String key) {
+        this.phase = phase;
+        this.key = key;
+    }
+
+    void record(long duration, boolean success) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && duration > BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        total.addAndGet(duration);
+        max.accumulateAndGet(duration, Math::max);
+        if (!success) {
+            failures.incrementAndGet();
+        }
+    }
+
+    @Exported
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return the server or KB the histogram is about, empty if it's about
+     * every one of them
+     */
+    @Exported
+    public String getKey() {
+        return key;
+    }
+
+    @Exported
+    public long getCount() {
+        return count.get();
+    }
+
+    @Exported
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return total time, in milliseconds
+     */
+    @Exported
+    public long getTotal() {
+        return total.get();
+    }
+
+    @Exported
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    @Exported
+    public long[] getBucketBounds() {
+        return BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * @return number of durations in each bucket. The last one holds the
+     * durations longer than the last bound.
+     */
+    @Exported
+    public long[] getBuckets() {
+        long[] values = new long[buckets.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buckets.get(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.metrics;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Api;
+import hudson.model.RootAction;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ *
+ * @author jlr
+ *
+ * Histograms of the time taken by each phase since Jenkins started, overall,
+ * per GXserver and per KB. Available to administrators at /genexus-metrics
+ * (and /genexus-metrics/api/json).
+ */
+@Extension
+@ExportedBean
+public class PhaseMetrics implements RootAction, StaplerProxy {
+
+    private static final ConcurrentMap<String, PhaseHistogram> OVERALL = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, PhaseHistogram> BY_SERVER = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, PhaseHistogram> BY_KB = new ConcurrentHashMap<>();
+
+    static void record(PhaseSpan span) {
+        record(OVERALL, span.getPhase(), "", span);
+        if (StringUtils.isNotBlank(span.getServer())) {
+            record(BY_SERVER, span.getPhase(), span.getServer(), span);
+        }
+        if (StringUtils.isNotBlank(span.getKb())) {
+            String kb = StringUtils.isNotBlank(span.getServer())
+                    ? span.getServer() + " " + span.getKb()
+                    : span.getKb();
+            record(BY_KB, span.getPhase(), kb, span);
+        }
+    }
+
+    private static void record(ConcurrentMap<String, PhaseHistogram> histograms, Phase phase, String key, PhaseSpan span) {
+        histograms.computeIfAbsent(phase.name() + "\n" + key, (k) -> new PhaseHistogram(phase, key))
+                .record(span.getDuration(), span.isSuccess());
+    }
+
+    @Exported
+    public List<PhaseHistogram> getOverall() {
+        return sorted(OVERALL);
+    }
+
+    @Exported
+    public List<PhaseHistogram> getByServer() {
+        return sorted(BY_SERVER);
+    }
+
+    @Exported
+    public List<PhaseHistogram> getByKb() {
+        return sorted(BY_KB);
+    }
+
+    private static List<PhaseHistogram> sorted(ConcurrentMap<String, PhaseHistogram> histograms) {
+        List<PhaseHistogram> list = new ArrayList<>(histograms.values());
+        list.sort(Comparator.comparing(PhaseHistogram::getPhase).thenComparing(PhaseHistogram::getKey));
+        return list;
+    }
+
+    public String formatDuration(long millis) {
+        return Util.getTimeSpanString(millis);
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * Server URLs and KB names are not for everyone to see.
+     */
+    @Override
+    public Object getTarget() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        return this;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GeneXus Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "genexus-metrics";
+    }
+}
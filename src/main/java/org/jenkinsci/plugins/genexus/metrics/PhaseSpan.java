@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.metrics;
+
+import java.io.Serializable;
+import java.util.Date;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ *
+ * @author jlr
+ *
+ * A single timed phase of a build.
+ */
+@ExportedBean(defaultVisibility = 999)
+public final class PhaseSpan implements Serializable {
+
+    private final Phase phase;
+    private final String server;
+    private final String kb;
+    private final long startTime;
+    private final long duration;
+    private final boolean success;
+
+    PhaseSpan(Phase phase, String server, String kb, long startTime, long duration, boolean success) {
+        this.phase = phase;
+        this.server = server;
+        this.kb = kb;
+        this.startTime = startTime;
+        this.duration = duration;
+        this.success = success;
+    }
+
+    @Exported
+    public Phase getPhase() {
+        return phase;
+    }
+
+    @Exported
+    public String getServer() {
+        return server;
+    }
+
+    @Exported
+    public String getKb() {
+        return kb;
+    }
+
+    /**
+     * @return when the phase started, in milliseconds since the epoch
+     */
+    @Exported
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public Date getStartDate() {
+        return new Date(startTime);
+    }
+
+    /**
+     * @return how long the phase took, in milliseconds
+     */
+    @Exported
+    public long getDuration() {
+        return duration;
+    }
+
+    @Exported
+    public boolean isSuccess() {
+        return success;
+    }
+
+    private static final long serialVersionUID = 1L;
+}
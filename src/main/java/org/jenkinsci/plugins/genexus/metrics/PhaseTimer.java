@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.metrics;
+
+import hudson.model.Run;
+import javax.annotation.CheckForNull;
+
+/**
+ *
+ * @author jlr
+ *
+ * Times a phase and records it in the build (if any) and in the
+ * {@link PhaseMetrics} histograms.
+ *
+ * <pre>
+ * try (PhaseTimer timer = PhaseTimer.start(Phase.UPDATE, build, serverURL, kbName)) {
+ *     ...
+ *     timer.succeeded();
+ * }
+ * </pre>
+ */
+public final class PhaseTimer implements AutoCloseable {
+
+    private final Phase phase;
+    private final Run<?, ?> run;
+    private final String server;
+    private final String kb;
+    private final long startTime;
+    private final long startNanos;
+    private boolean success = false;
+    private boolean closed = false;
+
+    private PhaseTimer(Phase phase, Run<?, ?> run, String server, String kb) {
+        this.phase = phase;
+        this.run = run;
+        this.server = server;
+        this.kb = kb;
+        this.startTime = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @param phase phase being timed
+     * @param run build the phase belongs to, null if none (eg: polling)
+     * @param server GXserver involved, if any
+     * @param kb KB involved, if any
+     */
+    public static PhaseTimer start(Phase phase, @CheckForNull Run<?, ?> run, @CheckForNull String server, @CheckForNull String kb) {
+        return new PhaseTimer(phase, run, server, kb);
+    }
+
+    /**
+     * Marks the phase as successful. Phases closed without calling this are
+     * recorded as failed.
+     */
+    public void succeeded() {
+        success = true;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        long duration = (System.nanoTime() - startNanos) / 1000000;
+        PhaseSpan span = new PhaseSpan(phase, server, kb, startTime, duration, success);
+
+        // only running builds are saved afterwards, so there's no point in
+        // adding spans to finished ones (eg: when their changelog is loaded)
+        if (run != null && run.isBuilding()) {
+            PhaseTimingAction.forRun(run).add(span);
+        }
+
+        PhaseMetrics.record(span);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.metrics;
+
+import hudson.Util;
+import hudson.model.Action;
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ *
+ * @author jlr
+ *
+ * Time spent by a build in each GeneXus phase (checkout, history, build, etc.)
+ * Shown as a summary in the build page and exported through the remote API.
+ */
+@ExportedBean
+public final class PhaseTimingAction implements Action {
+
+    private final List<PhaseSpan> spans = new ArrayList<>();
+
+    /**
+     * Gets the action of a build, adding it if it has none yet.
+     */
+    static PhaseTimingAction forRun(Run<?, ?> run) {
+        synchronized (run) {
+            PhaseTimingAction action = run.getAction(PhaseTimingAction.class);
+            if (action == null) {
+                action = new PhaseTimingAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    synchronized void add(PhaseSpan span) {
+        spans.add(span);
+    }
+
+    @Exported
+    public synchronized List<PhaseSpan> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * @return total time spent in each phase, in milliseconds
+     */
+    public synchronized Map<Phase, Long> getTotals() {
+        Map<Phase, Long> totals = new EnumMap<>(Phase.class);
+        for (PhaseSpan span : spans) {
+            totals.merge(span.getPhase(), span.getDuration(), Long::sum);
+        }
+        return totals;
+    }
+
+    public String formatDuration(long millis) {
+        return Util.getTimeSpanString(millis);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GeneXus Timings";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
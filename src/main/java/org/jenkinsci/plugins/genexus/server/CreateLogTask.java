@@ -24,14 +24,22 @@
 package org.jenkinsci.plugins.genexus.server;
 
 import hudson.model.TaskListener;
+import hudson.remoting.RemoteOutputStream;
 import hudson.remoting.VirtualChannel;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
-import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.jenkinsci.plugins.genexus.helpers.TeamDevArgumentListBuilder;
+import org.jenkinsci.plugins.genexus.helpers.TeamDevCredentials;
 
 /**
  *
@@ -44,9 +52,12 @@ public class CreateLogTask  extends MasterToSlaveFileCallable<Boolean> {
     private final TaskListener listener;
     private final GXSConnection gxsConnection;
     private final File logFile;
+    private final RemoteOutputStream logStream;
     private final Date fromTimestamp;
     private final Date toTimestamp;
     private final boolean fromExcluding;
+    private final TeamDevWorker.Options teamDevOptions;
+    private final TeamDevCredentials credentials;
 
     public CreateLogTask(TaskListener listener, String gxPath, GXSConnection gxsConnection, File logFile) {
         this(listener, gxPath, gxsConnection, logFile, null, null);
@@ -57,22 +68,45 @@ public class CreateLogTask  extends MasterToSlaveFileCallable<Boolean> {
     }
     
     public CreateLogTask(TaskListener listener, String gxPath, GXSConnection gxsConnection, File logFile, Date fromTimestamp, Date toTimestamp, boolean fromExcluding) {
+        this(listener, gxPath, gxsConnection, logFile, fromTimestamp, toTimestamp, fromExcluding, TeamDevWorker.Options.DEFAULT);
+    }
+
+    CreateLogTask(TaskListener listener, String gxPath, GXSConnection gxsConnection, File logFile, Date fromTimestamp, Date toTimestamp, boolean fromExcluding, TeamDevWorker.Options teamDevOptions) {
+        this(listener, gxPath, gxsConnection, logFile, null, fromTimestamp, toTimestamp, fromExcluding, teamDevOptions);
+    }
+
+    /**
+     * Sends the log to the master instead of writing it on the node.
+     *
+     * @param logStream where the GZIP compressed log is written. It's closed
+     * when the task finishes.
+     */
+    CreateLogTask(TaskListener listener, String gxPath, GXSConnection gxsConnection, RemoteOutputStream logStream, Date fromTimestamp, Date toTimestamp, boolean fromExcluding, TeamDevWorker.Options teamDevOptions) {
+        this(listener, gxPath, gxsConnection, null, logStream, fromTimestamp, toTimestamp, fromExcluding, teamDevOptions);
+    }
+
+    private CreateLogTask(TaskListener listener, String gxPath, GXSConnection gxsConnection, File logFile, RemoteOutputStream logStream, Date fromTimestamp, Date toTimestamp, boolean fromExcluding, TeamDevWorker.Options teamDevOptions) {
         this.gxPath = gxPath;
         this.listener = listener;
         this.gxsConnection = gxsConnection;
         this.logFile = logFile;
+        this.logStream = logStream;
         this.fromTimestamp = DateUtils.cloneIfNotNull(fromTimestamp);
         this.toTimestamp = DateUtils.cloneIfNotNull(toTimestamp);
         this.fromExcluding = fromExcluding;
+        this.teamDevOptions = teamDevOptions;
+
+        // looked up here, as tasks are created on the master
+        this.credentials = TeamDevCredentials.forConnection(gxsConnection);
     }
 
     /**
-     * @return true if success. The logFile may contain an actual log or the error 
-     * info.
+     * @return true if success. The logFile (or logStream) may contain an
+     * actual log or the error info.
      */
     @Override
     public Boolean invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
-        TeamDevArgumentListBuilder args = new TeamDevArgumentListBuilder(gxPath, gxsConnection, fromTimestamp, toTimestamp, fromExcluding);
+        TeamDevArgumentListBuilder args = new TeamDevArgumentListBuilder(gxPath, gxsConnection, credentials, fromTimestamp, toTimestamp, fromExcluding);
 
         listener.getLogger().println("Checking GeneXus Server history");
         listener.getLogger().println(args.toString());
@@ -81,22 +115,69 @@ public class CreateLogTask  extends MasterToSlaveFileCallable<Boolean> {
         try {
             ProcessBuilder procBuilder = new ProcessBuilder(args.toCommandArray());
             procBuilder.redirectErrorStream(true);
-            procBuilder.redirectOutput(logFile);
-            Process proc = procBuilder.start();
-            int exitCode = proc.waitFor();
+
+            // the end of the output is also kept in memory, so that errors
+            // can be reported without reading the log file back
+            TailBuffer tail = new TailBuffer();
+            int exitCode;
+            if (logStream == null) {
+                exitCode = TeamDevWorker.run(procBuilder, teamDevOptions, (proc) -> {
+                    try (InputStream output = proc.getInputStream();
+                            OutputStream log = new TeeOutputStream(new BufferedOutputStream(new FileOutputStream(logFile)), tail)) {
+                        IOUtils.copy(output, log);
+                    }
+                    return proc.waitFor();
+                });
+            } else {
+                exitCode = TeamDevWorker.run(procBuilder, teamDevOptions, (proc) -> sendLog(proc, tail));
+            }
             success = (exitCode == 0);
             
             if (!success) {
                 listener.getLogger().println("Error checking history:");
-                try (Stream<String> stream = Files.lines(logFile.toPath())) {
-                    stream.forEach(listener.getLogger()::println);
-                }
+                listener.getLogger().println(tail.toString());
             }
          }
         catch (Exception e) {
             listener.getLogger().println("Error checking history: "+e.getMessage());
+            if (logStream != null) {
+                // TeamDev may not even have started
+                IOUtils.closeQuietly(logStream);
+            }
         }
         
         return success;
     }
+
+    /**
+     * Compresses the process output as it arrives and sends it to the master.
+     *
+     * @return the process exit code
+     */
+    private int sendLog(Process proc, TailBuffer tail) throws IOException, InterruptedException {
+        CountingOutputStream compressed = new CountingOutputStream(logStream);
+        CountingOutputStream raw = null;
+        try (InputStream output = proc.getInputStream()) {
+            raw = new CountingOutputStream(new GZIPOutputStream(new BufferedOutputStream(compressed), BUFFER_SIZE));
+            try (OutputStream log = new TeeOutputStream(raw, tail)) {
+                IOUtils.copy(output, log);
+            }
+        } finally {
+            if (raw == null) {
+                // the compressed stream could not be created
+                logStream.close();
+            }
+        }
+
+        long rawBytes = raw.getByteCount();
+        long compressedBytes = compressed.getByteCount();
+        listener.getLogger().println(String.format("History: %,d bytes, sent %,d bytes compressed (%d%%)",
+                rawBytes, compressedBytes, rawBytes > 0 ? compressedBytes * 100 / rawBytes : 100));
+
+        return proc.waitFor();
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final long serialVersionUID = 1L;
 }
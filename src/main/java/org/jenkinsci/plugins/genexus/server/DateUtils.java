@@ -24,36 +24,58 @@
 package org.jenkinsci.plugins.genexus.server;
 
 import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Locale;
-import java.util.TimeZone;
 
 /**
  *
  * @author jlr
  */
 class DateUtils {
+    
+    /**
+     * Dates as written by "TeamDev.exe history /utc". Unlike SimpleDateFormat
+     * this formatter is thread safe, so it's shared by every parse.
+     */
+    private static final DateTimeFormatter UTC_FORMATTER = DateTimeFormatter.ofPattern("M/d/uuuu H:m:s", Locale.ROOT);
+    private static final DateTimeFormatter UTC_WRITE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/uuuu HH:mm:ss", Locale.ROOT).withZone(ZoneOffset.UTC);
+
     public static Date cloneIfNotNull(Date date) {
         return date == null? null : new Date(date.getTime());
     }
     
+    /**
+     * Parses a date as written by "TeamDev.exe history /utc". Anything after
+     * the date (eg: fractions of a second or a zone) is ignored, as it always
+     * was.
+     *
+     * @return the date, or the epoch if there's no date
+     */
     static Date fromUTCstring(String utcDate) {
-        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss", Locale.ROOT);            
-        sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-
         Date parsedDate;
         try {
-            parsedDate = sdf.parse(utcDate);
+            LocalDateTime dateTime = LocalDateTime.from(UTC_FORMATTER.parse(utcDate.trim(), new ParsePosition(0)));
+            parsedDate = Date.from(dateTime.toInstant(ZoneOffset.UTC));
         }
-        catch (ParseException ex) {
+        catch (DateTimeException | NullPointerException ex) {
             parsedDate = new Date(0);
         }
         
         return parsedDate;
     }
     
+    /**
+     * Formats a date the same way "TeamDev.exe history /utc" does.
+     */
+    static String toUTCstring(Date date) {
+        return UTC_WRITE_FORMATTER.format(date.toInstant());
+    }
+    
     static String toDisplayDate(Date date) {
         if (date == null) {
             return "[no date]";
@@ -0,0 +1,290 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import hudson.Util;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.Action;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ *
+ * @author jlr
+ *
+ * A page of the entries of a change set, optionally filtered by object type,
+ * user and revision. Only the entries in the page are read.
+ */
+public final class GXSChangeLogPage {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Max number of actions shown for each entry.
+     */
+    public static final int MAX_ACTIONS_PER_ENTRY = 200;
+
+    private final Filter filter;
+    private final int page;
+    private final int pageSize;
+    private final int matchCount;
+    private final List<Item> items;
+
+    private GXSChangeLogPage(Filter filter, int page, int pageSize, int matchCount, List<Item> items) {
+        this.filter = filter;
+        this.page = page;
+        this.pageSize = pageSize;
+        this.matchCount = matchCount;
+        this.items = items;
+    }
+
+    /**
+     * Gets the page requested through the "page", "pageSize", "type",
+     * "user", "fromRevision" and "toRevision" query parameters.
+     */
+    static GXSChangeLogPage create(GXSChangeLogSet changeLogSet, StaplerRequest req) {
+        Filter filter = Filter.fromRequest(req);
+        int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, parseInt(req.getParameter("pageSize"), DEFAULT_PAGE_SIZE)));
+        int page = Math.max(1, parseInt(req.getParameter("page"), 1));
+
+        int first = (page - 1) * pageSize;
+        List<LogEntry> logs = changeLogSet.getLogs();
+        List<Item> items = new ArrayList<>();
+        int matchCount = 0;
+        try (GXSChangeLogSet.OpenLog open = changeLogSet.keepOpen()) {
+            for (int i = 0; i < logs.size(); i++) {
+                if (!filter.matches(changeLogSet, i)) {
+                    continue;
+                }
+
+                if (matchCount >= first && items.size() < pageSize) {
+                    LogEntry entry = logs.get(i);
+                    items.add(new Item(i, entry, entry.getActions(MAX_ACTIONS_PER_ENTRY)));
+                }
+                matchCount++;
+
+                // no need to go through the rest when there's no filter
+                if (filter.isEmpty() && items.size() == pageSize) {
+                    matchCount = logs.size();
+                    break;
+                }
+            }
+        }
+
+        return new GXSChangeLogPage(filter, page, pageSize, matchCount, Collections.unmodifiableList(items));
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPageCount() {
+        return Math.max(1, (matchCount + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * @return the number of entries that match the filter, in every page
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+
+    public boolean hasPrevious() {
+        return page > 1;
+    }
+
+    public boolean hasNext() {
+        return page < getPageCount();
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public int getMaxActionsPerEntry() {
+        return MAX_ACTIONS_PER_ENTRY;
+    }
+
+    /**
+     * @return the query string of another page with the same filter
+     */
+    public String getPageQuery(int otherPage) {
+        StringBuilder query = new StringBuilder("?page=").append(otherPage);
+        if (pageSize != DEFAULT_PAGE_SIZE) {
+            query.append("&pageSize=").append(pageSize);
+        }
+        filter.appendQuery(query);
+        return query.toString();
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * An entry in the page, along with its position in the whole change set
+     * and the actions shown (read while the page is created, with the rest
+     * of the page).
+     */
+    public static final class Item {
+
+        private final int index;
+        private final LogEntry entry;
+        private final List<Action> actions;
+
+        Item(int index, LogEntry entry, List<Action> actions) {
+            this.index = index;
+            this.entry = entry;
+            this.actions = actions;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public LogEntry getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return up to {@link #MAX_ACTIONS_PER_ENTRY} actions of the entry
+         */
+        public List<Action> getActions() {
+            return actions;
+        }
+    }
+
+    /**
+     * Which entries are wanted. Empty criteria match every entry.
+     */
+    public static final class Filter {
+
+        private final String type;
+        private final String user;
+        private final Integer fromRevision;
+        private final Integer toRevision;
+
+        Filter(String type, String user, Integer fromRevision, Integer toRevision) {
+            this.type = StringUtils.trimToNull(type);
+            this.user = StringUtils.trimToNull(user);
+            this.fromRevision = fromRevision;
+            this.toRevision = toRevision;
+        }
+
+        static Filter fromRequest(StaplerRequest req) {
+            return new Filter(
+                    req.getParameter("type"),
+                    req.getParameter("user"),
+                    parseRevision(req.getParameter("fromRevision")),
+                    parseRevision(req.getParameter("toRevision")));
+        }
+
+        private static Integer parseRevision(String value) {
+            try {
+                return StringUtils.isBlank(value) ? null : Integer.valueOf(value.trim());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public Integer getFromRevision() {
+            return fromRevision;
+        }
+
+        public Integer getToRevision() {
+            return toRevision;
+        }
+
+        public boolean isEmpty() {
+            return type == null && user == null && fromRevision == null && toRevision == null;
+        }
+
+        /**
+         * The revision is checked first, as it needs no entry to be read.
+         * Then the user, and the object types of the actions last.
+         */
+        boolean matches(GXSChangeLogSet changeLogSet, int index) {
+            if (fromRevision != null || toRevision != null) {
+                int revision = changeLogSet.getRevision(index);
+                if ((fromRevision != null && revision < fromRevision)
+                        || (toRevision != null && revision > toRevision)) {
+                    return false;
+                }
+            }
+
+            if (user == null && type == null) {
+                return true;
+            }
+
+            LogEntry entry = changeLogSet.getLogs().get(index);
+            if (user != null && !StringUtils.containsIgnoreCase(entry.getUserName(), user)) {
+                return false;
+            }
+
+            if (type != null) {
+                for (Action action : entry.getActions()) {
+                    if (type.equalsIgnoreCase(action.getObjectType())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            return true;
+        }
+
+        void appendQuery(StringBuilder query) {
+            appendParameter(query, "type", type);
+            appendParameter(query, "user", user);
+            appendParameter(query, "fromRevision", fromRevision);
+            appendParameter(query, "toRevision", toRevision);
+        }
+
+        private static void appendParameter(StringBuilder query, String name, Object value) {
+            if (value != null) {
+                query.append('&').append(name).append('=').append(Util.rawEncode(value.toString()));
+            }
+        }
+    }
+}
@@ -28,15 +28,21 @@ import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
 import hudson.model.Run;
 import hudson.scm.ChangeLogParser;
 import hudson.scm.RepositoryBrowser;
-import hudson.util.Digester2;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.digester.Digester;
-import org.xml.sax.InputSource;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jenkinsci.plugins.genexus.metrics.Phase;
+import org.jenkinsci.plugins.genexus.metrics.PhaseTimer;
 import org.xml.sax.SAXException;
 
 /**
@@ -45,67 +51,243 @@ import org.xml.sax.SAXException;
  */
 public class GXSChangeLogParser extends ChangeLogParser {
 
+    private static final String LOG_ENTRY = "logentry";
+    private static final String ACTION = "action";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
+
     public GXSChangeLogParser() {
     }
     
     @SuppressWarnings("unchecked") 
     @Override
     public GXSChangeLogSet parse(@SuppressWarnings("rawtypes") Run build, RepositoryBrowser<?> browser, File changelogFile) throws IOException, SAXException {
-        List<LogEntry> logs = parse(changelogFile);
-        return new GXSChangeLogSet(build, browser, logs);
+        try (PhaseTimer timer = PhaseTimer.start(Phase.CHANGELOG_PARSING, build, null, null)) {
+            GXSCompactChangeLog.IndexedLog indexedLog = GXSCompactChangeLog.isCompact(changelogFile)
+                    ? GXSCompactChangeLog.open(changelogFile)
+                    : null;
+            GXSChangeLogSet changeLogSet = indexedLog != null
+                    ? new GXSChangeLogSet(build, browser, indexedLog)
+                    : new GXSChangeLogSet(build, browser, parse(changelogFile));
+            timer.succeeded();
+            return changeLogSet;
+        }
     }
     
+    /**
+     * Reads a changelog file, either in the compact format or as XML.
+     */
     public static List<LogEntry> parse(File changelogFile) throws IOException {
-        InputSource source = new InputSource(new FileInputStream(changelogFile));
-        source.setSystemId(changelogFile.toURI().toURL().toString());
-        return parse(source);
+        if (GXSCompactChangeLog.isCompact(changelogFile)) {
+            return GXSCompactChangeLog.read(changelogFile);
+        }
+
+        ArrayList<LogEntry> logs = new ArrayList<>();
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(changelogFile))) {
+            parse(stream, changelogFile.toURI().toURL().toString(), logs::add);
+        }
+        return logs;
     }
 
     public static List<LogEntry> parse(InputStream stream) throws IOException {
-        InputSource source = new InputSource(stream);
-        return parse(source);
-    }
-            
-    private static List<LogEntry> parse(InputSource source) throws IOException {
         ArrayList<LogEntry> logs = new ArrayList<>();
-        Digester digester = createDigester(logs);
-        
+        parse(stream, logs::add);
+        return logs;
+    }
+
+    /**
+     * Parses a log as written by "TeamDev.exe history /x", handing each entry
+     * to the consumer as soon as it has been completely read, so that the
+     * whole log is never held in memory.
+     *
+     * @param stream XML log
+     * @param consumer receives every log entry, in the order they are read
+     */
+    public static void parse(InputStream stream, Consumer<LogEntry> consumer) throws IOException {
+        parse(stream, null, (logEntry) -> {
+            consumer.accept(logEntry);
+            return true;
+        });
+    }
+
+    /**
+     * Parses only the first entry of a log, without reading any further.
+     *
+     * @param stream XML log
+     * @return the first log entry, or null if the log has no entries
+     */
+    static LogEntry parseFirst(InputStream stream) throws IOException {
+        LogEntry[] first = new LogEntry[1];
+        parse(stream, null, (logEntry) -> {
+            first[0] = logEntry;
+            return false;
+        });
+        return first[0];
+    }
+
+    /**
+     * @param handler receives every log entry, and returns false when it's not
+     * interested in any further entries
+     * @return false if the parsing was stopped by the handler
+     */
+    static boolean parse(InputStream stream, String systemId, Predicate<LogEntry> handler) throws IOException {
+        XMLStreamReader reader = null;
         try {
-            digester.parse(source);
-        } catch (IOException | SAXException e) {
-            String sourceId = source.getSystemId()!=null? source.getSystemId() : "";
-            throw new IOException("Failed to parse "+sourceId,e);
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(systemId, stream);
+            return parse(reader, handler);
+        } catch (XMLStreamException e) {
+            String sourceId = systemId != null ? systemId : "";
+            throw new IOException("Failed to parse " + sourceId, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nothing left to read anyway
+                }
+            }
         }
+    }
 
-        logs.forEach((logEntry) -> logEntry.finish());
-        
-        return logs;
+    private static boolean parse(XMLStreamReader reader, Predicate<LogEntry> handler) throws XMLStreamException {
+        LogEntry logEntry = null;
+        Action action = null;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    String startName = reader.getLocalName();
+                    if (LOG_ENTRY.equals(startName)) {
+                        logEntry = new LogEntry();
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            setLogEntryProperty(logEntry, reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                        }
+                    } else if (logEntry != null && action == null && ACTION.equals(startName)) {
+                        action = new Action();
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            setActionProperty(action, reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                        }
+                    } else if (action != null) {
+                        if (isActionProperty(startName)) {
+                            setActionProperty(action, startName, reader.getElementText());
+                        }
+                    } else if (logEntry != null) {
+                        if (isLogEntryProperty(startName)) {
+                            setLogEntryProperty(logEntry, startName, reader.getElementText());
+                        }
+                    }
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    String endName = reader.getLocalName();
+                    if (action != null && ACTION.equals(endName)) {
+                        logEntry.addAction(action);
+                        action = null;
+                    } else if (logEntry != null && LOG_ENTRY.equals(endName)) {
+                        logEntry.finish();
+                        if (!handler.test(logEntry)) {
+                            return false;
+                        }
+                        logEntry = null;
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isLogEntryProperty(String name) {
+        switch (name) {
+            case "revision":
+            case "author":
+            case "user":
+            case "date":
+            case "msg":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void setLogEntryProperty(LogEntry logEntry, String name, String value) {
+        value = value.trim();
+        switch (name) {
+            case "revision":
+                logEntry.setRevision(parseRevision(value));
+                break;
+            case "author":
+            case "user":
+                logEntry.setUser(value);
+                break;
+            case "date":
+                /* times in changelog.xml are in UTC (output from a call to "TeamDev.exe -utc ...") */
+                logEntry.setDateFromUTCDate(value);
+                break;
+            case "msg":
+                logEntry.setMsg(value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static boolean isActionProperty(String name) {
+        switch (name) {
+            case "type":
+            case "objectGuid":
+            case "objectType":
+            case "objectTypeGuid":
+            case "objectName":
+            case "objectDescription":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void setActionProperty(Action action, String name, String value) {
+        value = value.trim();
+        switch (name) {
+            case "type":
+                action.setType(value);
+                break;
+            case "objectGuid":
+                action.setObjectGuid(value);
+                break;
+            case "objectType":
+                action.setObjectType(value);
+                break;
+            case "objectTypeGuid":
+                action.setObjectTypeGuid(value);
+                break;
+            case "objectName":
+                action.setObjectName(value);
+                break;
+            case "objectDescription":
+                action.setObjectDescription(value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static int parseRevision(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
     }
-    
-    private static Digester createDigester(ArrayList<LogEntry> logs) {
-        Digester digester = new Digester2();
-        digester.push(logs);
-
-        digester.addObjectCreate("*/logentry", LogEntry.class);
-        digester.addSetProperties("*/logentry");
-        digester.addBeanPropertySetter("*/logentry/author","user");
-
-        /* times in changelog.xml are in UTC (output from a call to "TeamDev.exe -utc ...") */
-        digester.addCallMethod("*/logentry/date", "setDateFromUTCDate", 0);
-
-
-        digester.addBeanPropertySetter("*/logentry/msg");
-        digester.addSetNext("*/logentry","add");
-
-        digester.addObjectCreate("*/logentry/actions/action", Action.class);
-        digester.addSetProperties("*/logentry/actions/action");
-        digester.addBeanPropertySetter("*/logentry/actions/action/objectGuid");
-        digester.addBeanPropertySetter("*/logentry/actions/action/objectType");
-        digester.addBeanPropertySetter("*/logentry/actions/action/objectTypeGuid");
-        digester.addBeanPropertySetter("*/logentry/actions/action/objectName");
-        digester.addBeanPropertySetter("*/logentry/actions/action/objectDescription");       
-        digester.addSetNext("*/logentry/actions/action","addAction");
-            
-        return digester;
-    }    
 }
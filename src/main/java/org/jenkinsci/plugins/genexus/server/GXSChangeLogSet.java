@@ -23,12 +23,17 @@
  */
 package org.jenkinsci.plugins.genexus.server;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import hudson.Util;
+import hudson.model.Item;
 import hudson.model.Run;
 import hudson.model.User;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.EditType;
 import hudson.scm.RepositoryBrowser;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.AbstractList;
@@ -41,6 +46,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
@@ -49,6 +58,12 @@ import org.kohsuke.stapler.export.ExportedBean;
  * @author jlr
  */
 public final class GXSChangeLogSet extends ChangeLogSet {
+
+    /**
+     * Max number of entries shown in the build summary.
+     */
+    private static final int MAX_DIGEST_ENTRIES = 20;
+
     private final List<LogEntry> logs;
 
     /**
@@ -62,10 +77,165 @@ public final class GXSChangeLogSet extends ChangeLogSet {
         this.logs = prepareChangeLogEntries(logs);
     }
 
+    /**
+     * Change set whose entries are read from a compact changelog when
+     * requested. They were already sorted and without duplicates when the
+     * changelog was written.
+     */
+    @SuppressWarnings("unchecked") 
+    GXSChangeLogSet(Run<?,?> build, RepositoryBrowser<?> browser, GXSCompactChangeLog.IndexedLog logs) {
+        super(build, browser);
+        logs.setParent(this);
+        this.logs = logs;
+    }
+
     public boolean isEmptySet() {
         return logs.isEmpty();
     }
 
+    /**
+     * @return the most recent revision in the change set, or 0 if there are
+     * none
+     */
+    public int getLastRevision() {
+        return logs.isEmpty() ? 0 : getRevision(0);
+    }
+
+    /**
+     * @return the oldest revision in the change set, or 0 if there are none
+     */
+    public int getFirstRevision() {
+        return logs.isEmpty() ? 0 : getRevision(logs.size() - 1);
+    }
+
+    /**
+     * @return the number of actions of every entry
+     */
+    public long getTotalActionsCount() {
+        if (logs instanceof GXSCompactChangeLog.IndexedLog) {
+            return ((GXSCompactChangeLog.IndexedLog) logs).getTotalActionsCount();
+        }
+
+        long total = 0;
+        for (LogEntry log : logs) {
+            total += log.getActionsCount();
+        }
+        return total;
+    }
+
+    /**
+     * Keeps the compact changelog open until the returned object is closed,
+     * so that reading many entries opens it only once. If it can't be
+     * opened, entries are still read (or skipped) one at a time.
+     */
+    OpenLog keepOpen() {
+        if (logs instanceof GXSCompactChangeLog.IndexedLog) {
+            try {
+                Closeable open = ((GXSCompactChangeLog.IndexedLog) logs).keepOpen();
+                return () -> {
+                    try {
+                        open.close();
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.WARNING, "Unable to close changelog", ex);
+                    }
+                };
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Unable to open changelog", ex);
+            }
+        }
+        return () -> {
+        };
+    }
+
+    /**
+     * A changelog kept open.
+     */
+    interface OpenLog extends Closeable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * @return the revision of an entry, without reading the entry if
+     * possible
+     */
+    int getRevision(int index) {
+        if (logs instanceof GXSCompactChangeLog.IndexedLog) {
+            return ((GXSCompactChangeLog.IndexedLog) logs).getRevision(index);
+        }
+        return logs.get(index).getRevision();
+    }
+
+    /**
+     * @return the entries requested for the changes page
+     */
+    public GXSChangeLogPage getPage(StaplerRequest req) {
+        return GXSChangeLogPage.create(this, req);
+    }
+
+    /**
+     * @return the (unfiltered) changes page where an entry is shown
+     */
+    public int getPageOf(int index) {
+        return index / GXSChangeLogPage.DEFAULT_PAGE_SIZE + 1;
+    }
+
+    /**
+     * @return the entries shown in the build summary
+     */
+    public List<LogEntry> getDigestLogs() {
+        return logs.size() <= MAX_DIGEST_ENTRIES ? logs : logs.subList(0, MAX_DIGEST_ENTRIES);
+    }
+
+    /**
+     * Streams the entries (and their actions) as JSON, writing each one as
+     * soon as it's read, so that change sets of any size can be exported.
+     * Accepts the same filters as the changes page.
+     */
+    public void doExport(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        if (getRun() != null) {
+            getRun().checkPermission(Item.READ);
+        }
+
+        GXSChangeLogPage.Filter filter = GXSChangeLogPage.Filter.fromRequest(req);
+        rsp.setContentType("application/json;charset=UTF-8");
+        try (OpenLog open = keepOpen();
+                JsonGenerator json = new JsonFactory().createGenerator(rsp.getOutputStream(), JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("kind", getKind());
+            json.writeArrayFieldStart("entries");
+            for (int i = 0; i < logs.size(); i++) {
+                if (filter.matches(this, i)) {
+                    writeEntry(json, logs.get(i));
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeEntry(JsonGenerator json, LogEntry log) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("revision", log.getRevision());
+        json.writeStringField("user", log.getUserName());
+        json.writeNumberField("timestamp", log.getTimestamp());
+        json.writeStringField("msg", log.getMsg());
+        json.writeArrayFieldStart("actions");
+        for (Action action : log.getActions()) {
+            json.writeStartObject();
+            json.writeStringField("type", action.getType());
+            json.writeStringField("objectGuid", action.getObjectGuid());
+            json.writeStringField("objectType", action.getObjectType());
+            json.writeStringField("objectTypeGuid", action.getObjectTypeGuid());
+            json.writeStringField("objectName", action.getObjectName());
+            json.writeStringField("objectDescription", action.getObjectDescription());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
     public List<LogEntry> getLogs() {
         return logs;
     }
@@ -86,16 +256,21 @@ public final class GXSChangeLogSet extends ChangeLogSet {
     }
     
     private List<LogEntry> prepareChangeLogEntries(List<LogEntry> items) {
-        items = removeDuplicatedEntries(items);
-        
-        // we want recent changes first
-        Collections.sort(items, new ReverseByRevisionComparator());
+        items = sortAndRemoveDuplicates(items);
         for (LogEntry log : items) {
             log.setParent(this);
         }
         return Collections.unmodifiableList(items);
     }
 
+    static List<LogEntry> sortAndRemoveDuplicates(List<LogEntry> items) {
+        items = removeDuplicatedEntries(items);
+        
+        // we want recent changes first
+        Collections.sort(items, new ReverseByRevisionComparator());
+        return items;
+    }
+
     /**
      * Removes duplicate entries, 
      * 
@@ -131,16 +306,24 @@ public final class GXSChangeLogSet extends ChangeLogSet {
     /**
      * One commit.
      * <p>
-     * Setter methods are public only so that the objects can be constructed from Digester.
+     * Setter methods are public only so that the objects can be constructed from the parser.
      * So please consider this object read-only.
      */
     public static class LogEntry extends ChangeLogSet.Entry {
         private int revision;
+        private String user;
         private User author;
         private Date date;
         private String msg;
         private List<Action> actions = new ArrayList<Action>();
 
+        /**
+         * Reads the actions of entries that come from a compact changelog,
+         * the first time they're requested.
+         */
+        private transient ActionsLoader actionsLoader;
+        private int actionsCount;
+
         /**
          * Gets the {@link GXSChangeLogSet} to which this change set belongs.
          */
@@ -179,10 +362,16 @@ public final class GXSChangeLogSet extends ChangeLogSet {
             return String.valueOf(revision);
         }
 
+        /**
+         * The {@link User} is resolved only when requested, as looking it up
+         * while parsing is much more expensive than parsing itself.
+         */
         @Override
         public User getAuthor() {
-            if(author==null)
+            if(user==null)
                 return User.getUnknown();
+            if(author==null)
+                author = User.get(user);
             return author;
         }
         
@@ -198,21 +387,29 @@ public final class GXSChangeLogSet extends ChangeLogSet {
         public Collection<String> getAffectedPaths() {
             return new AbstractList<String>() {
                 public String get(int index) {
-                    return actions.get(index).objectName;
+                    return getLoadedActions().get(index).objectName;
                 }
                 public int size() {
-                    return actions.size();
+                    return getActionsCount();
                 }
             };
         }
         
-        public void setUser(String author) {
-            this.author = User.get(author);
+        public void setUser(String user) {
+            this.user = user;
+            this.author = null;
         }
 
         @Exported
-        public String getUser() {// digester wants read/write property, even though it never reads. Duh.
-            return author!=null ? author.getDisplayName() : "unknown";
+        public String getUser() {
+            return user!=null ? getAuthor().getDisplayName() : "unknown";
+        }
+
+        /**
+         * @return the user name as it came from GXserver
+         */
+        String getUserName() {
+            return user;
         }
 
         @Exported
@@ -259,16 +456,64 @@ public final class GXSChangeLogSet extends ChangeLogSet {
          */
         @Exported
         public List<Action> getActions() {
-            return actions;
+            return getLoadedActions();
         }
         
+        /**
+         * Gets the first actions of this commit. When they haven't been read
+         * yet, only those are read (and they're not kept).
+         *
+         * @param limit max number of actions returned
+         */
+        public synchronized List<Action> getActions(int limit) {
+            if (actionsLoader == null || limit >= actionsCount) {
+                List<Action> loaded = getLoadedActions();
+                return loaded.size() <= limit ? loaded : loaded.subList(0, limit);
+            }
+
+            try {
+                List<Action> firstActions = actionsLoader.load(limit);
+                for (Action action : firstActions) {
+                    action.entry = this;
+                }
+                return firstActions;
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Unable to read the actions of revision " + revision, ex);
+                return new ArrayList<>();
+            }
+        }
+
         @Exported
-        public int getActionsCount() {
-            return actions.size();
+        public synchronized int getActionsCount() {
+            return actionsLoader != null ? actionsCount : actions.size();
         }
         
         @Override
         public Collection<Action> getAffectedFiles() {
+            return getLoadedActions();
+        }
+
+        void setActionsLoader(int actionsCount, ActionsLoader actionsLoader) {
+            this.actionsCount = actionsCount;
+            this.actionsLoader = actionsLoader;
+        }
+
+        private synchronized List<Action> getLoadedActions() {
+            if (actionsLoader != null) {
+                List<Action> loaded;
+                try {
+                    loaded = actionsLoader.load(actionsCount);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to read the actions of revision " + revision, ex);
+                    loaded = new ArrayList<>();
+                }
+
+                for (Action action : loaded) {
+                    action.entry = this;
+                }
+                actions = loaded;
+                actionsLoader = null;
+            }
             return actions;
         }
         
@@ -297,7 +542,7 @@ public final class GXSChangeLogSet extends ChangeLogSet {
             if (revision != that.revision) {
                 return false;
             }
-            if (author != null ? !author.equals(that.author) : that.author != null) {
+            if (user != null ? !user.equals(that.user) : that.user != null) {
                 return false;
             }
             if (date != null ? !date.equals(that.date) : that.date != null) {
@@ -313,7 +558,7 @@ public final class GXSChangeLogSet extends ChangeLogSet {
         @Override
         public int hashCode() {
             int result = revision;
-            result = 31 * result + (author != null ? author.hashCode() : 0);
+            result = 31 * result + (user != null ? user.hashCode() : 0);
             result = 31 * result + (date != null ? date.hashCode() : 0);
             result = 31 * result + (msg != null ? msg.hashCode() : 0);
             return result;
@@ -323,7 +568,7 @@ public final class GXSChangeLogSet extends ChangeLogSet {
     /**
      * A file in a commit.
      * <p>
-     * Setter methods are public only so that the objects can be constructed from Digester.
+     * Setter methods are public only so that the objects can be constructed from the parser.
      * So please consider this object read-only.
      */
     @ExportedBean(defaultVisibility=999)
@@ -451,6 +696,18 @@ public final class GXSChangeLogSet extends ChangeLogSet {
         }
     }
 
+    /**
+     * Reads the actions of a log entry.
+     */
+    @FunctionalInterface
+    interface ActionsLoader {
+
+        /**
+         * @param limit max number of actions to read
+         */
+        List<Action> load(int limit) throws IOException;
+    }
+
     private static final class ReverseByRevisionComparator implements Comparator<LogEntry>, Serializable {
         private static final long serialVersionUID = 1L;
 
@@ -458,4 +715,6 @@ public final class GXSChangeLogSet extends ChangeLogSet {
             return b.getRevision() - a.getRevision();
         }
     }
+
+    private static final Logger LOGGER = Logger.getLogger(GXSChangeLogSet.class.getName());
 }
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.Action;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+
+/**
+ *
+ * @author jlr
+ *
+ * Writes log entries in the same XML format "TeamDev.exe history /x /utc"
+ * does, so that they can be read back by {@link GXSChangeLogParser}.
+ */
+final class GXSChangeLogWriter {
+
+    static final byte[] LOG_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n".getBytes(StandardCharsets.UTF_8);
+    static final byte[] LOG_END = "</log>\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private GXSChangeLogWriter() {
+    }
+
+    /**
+     * @return the UTF-8 encoded XML element of a single log entry
+     */
+    static byte[] toXml(LogEntry logEntry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        write(logEntry, out);
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    static void write(LogEntry logEntry, OutputStream out) throws IOException {
+        try {
+            XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+            writer.writeStartElement("logentry");
+            writer.writeAttribute("revision", String.valueOf(logEntry.getRevision()));
+
+            writeElement(writer, "author", logEntry.getUserName());
+            if (logEntry.getDate() != null) {
+                writeElement(writer, "date", DateUtils.toUTCstring(logEntry.getDate()));
+            }
+            writeElement(writer, "msg", logEntry.getMsg());
+
+            writer.writeStartElement("actions");
+            for (Action action : logEntry.getActions()) {
+                writer.writeStartElement("action");
+                if (action.getType() != null) {
+                    writer.writeAttribute("type", action.getType());
+                }
+                writeElement(writer, "objectGuid", action.getObjectGuid());
+                writeElement(writer, "objectType", action.getObjectType());
+                writeElement(writer, "objectTypeGuid", action.getObjectTypeGuid());
+                writeElement(writer, "objectName", action.getObjectName());
+                writeElement(writer, "objectDescription", action.getObjectDescription());
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+
+            writer.writeEndElement();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write log entry for revision " + logEntry.getRevision(), e);
+        }
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+}
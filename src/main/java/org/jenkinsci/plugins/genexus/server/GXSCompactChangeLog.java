@@ -0,0 +1,604 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import hudson.scm.ChangeLogSet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.Action;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+
+/**
+ *
+ * @author jlr
+ *
+ * Compact binary format for the changelog kept with each build.
+ *
+ * Users, object types, action types, etc. repeat a lot in a changelog, so
+ * every string is stored once and log entries refer to them by index. An
+ * index at the end of the file allows reading any entry (or its actions)
+ * without reading the rest:
+ * <pre>
+ * magic "GXCL", version (int)
+ * entries, one after the other:
+ *   revision (int), timestamp (long, -1 if none), user (int), msg (int),
+ *   action count (int), then each action:
+ *     type, objectGuid, objectType, objectTypeGuid, objectName,
+ *     objectDescription (int each)
+ * strings, one after the other: length (int) + UTF-8 bytes
+ * index:
+ *   entry count (int), then revision (int), offset (long) and action
+ *   count (int) of each entry
+ *   string count (int), then the offset (long) of each string
+ * offset of the index (long)
+ * </pre>
+ * String indexes of -1 stand for null values. Entries are written without
+ * duplicates and sorted as {@link GXSChangeLogSet} wants them (recent
+ * changes first).
+ *
+ * Changelogs in the XML format of "TeamDev history /x" are still read by
+ * {@link GXSChangeLogParser}.
+ */
+final class GXSCompactChangeLog {
+
+    private static final byte[] MAGIC = {'G', 'X', 'C', 'L'};
+    private static final int VERSION = 2;
+    private static final int NULL_INDEX = -1;
+    private static final long NO_DATE = -1;
+
+    /**
+     * Size of an entry before its actions: revision, timestamp, user, msg
+     * and action count.
+     */
+    private static final int ENTRY_HEADER_SIZE = 4 + 8 + 4 + 4 + 4;
+
+    /**
+     * Size of an action: the index of each of its six strings.
+     */
+    private static final int ACTION_SIZE = 6 * 4;
+
+    /**
+     * Set this system property to true to keep changelogs as XML (eg: to
+     * allow going back to previous versions of the plugin).
+     */
+    static final String DISABLED_PROPERTY = GXSCompactChangeLog.class.getName() + ".disabled";
+
+    private GXSCompactChangeLog() {
+    }
+
+    static boolean isEnabled() {
+        return !Boolean.getBoolean(DISABLED_PROPERTY);
+    }
+
+    /**
+     * @return true if the file is in this format
+     */
+    static boolean isCompact(File file) throws IOException {
+        return getVersion(file) > 0;
+    }
+
+    /**
+     * @return the version of the compact format the file is in, or 0 if
+     * it's not in the compact format.
+     */
+    private static int getVersion(File file) throws IOException {
+        if (file.length() < MAGIC.length + 4) {
+            return 0;
+        }
+
+        byte[] header = new byte[MAGIC.length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(header);
+            return Arrays.equals(header, MAGIC) ? in.readInt() : 0;
+        }
+    }
+
+    /**
+     * Rewrites a changelog in the latest version of the compact format. Does
+     * nothing if it's already there.
+     */
+    static void compact(File changelogFile) throws IOException {
+        if (getVersion(changelogFile) == VERSION) {
+            return;
+        }
+
+        List<LogEntry> logs = GXSChangeLogSet.sortAndRemoveDuplicates(GXSChangeLogParser.parse(changelogFile));
+
+        File tempFile = new File(changelogFile.getPath() + ".tmp");
+        write(logs, tempFile);
+        Files.move(tempFile.toPath(), changelogFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param logs entries, already without duplicates and sorted
+     */
+    static void write(List<LogEntry> logs, File file) throws IOException {
+        StringTable strings = new StringTable();
+        for (LogEntry log : logs) {
+            strings.add(log.getUserName());
+            strings.add(log.getMsg());
+            for (Action action : log.getActions()) {
+                strings.add(action.getType());
+                strings.add(action.getObjectGuid());
+                strings.add(action.getObjectType());
+                strings.add(action.getObjectTypeGuid());
+                strings.add(action.getObjectName());
+                strings.add(action.getObjectDescription());
+            }
+        }
+
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try (DataOutputStream out = new DataOutputStream(counter)) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+
+            long[] entryOffsets = new long[logs.size()];
+            for (int i = 0; i < logs.size(); i++) {
+                LogEntry log = logs.get(i);
+                entryOffsets[i] = counter.getByteCount();
+
+                out.writeInt(log.getRevision());
+                out.writeLong(log.getDate() != null ? log.getDate().getTime() : NO_DATE);
+                out.writeInt(strings.indexOf(log.getUserName()));
+                out.writeInt(strings.indexOf(log.getMsg()));
+
+                List<Action> actions = log.getActions();
+                out.writeInt(actions.size());
+                for (Action action : actions) {
+                    out.writeInt(strings.indexOf(action.getType()));
+                    out.writeInt(strings.indexOf(action.getObjectGuid()));
+                    out.writeInt(strings.indexOf(action.getObjectType()));
+                    out.writeInt(strings.indexOf(action.getObjectTypeGuid()));
+                    out.writeInt(strings.indexOf(action.getObjectName()));
+                    out.writeInt(strings.indexOf(action.getObjectDescription()));
+                }
+            }
+
+            long[] stringOffsets = new long[strings.size()];
+            int stringIndex = 0;
+            for (String value : strings.values()) {
+                stringOffsets[stringIndex++] = counter.getByteCount();
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            long indexOffset = counter.getByteCount();
+            out.writeInt(logs.size());
+            for (int i = 0; i < logs.size(); i++) {
+                out.writeInt(logs.get(i).getRevision());
+                out.writeLong(entryOffsets[i]);
+                out.writeInt(logs.get(i).getActions().size());
+            }
+            out.writeInt(stringOffsets.length);
+            for (long offset : stringOffsets) {
+                out.writeLong(offset);
+            }
+            out.writeLong(indexOffset);
+        }
+    }
+
+    /**
+     * Reads every entry of a changelog.
+     */
+    static List<LogEntry> read(File file) throws IOException {
+        return new ArrayList<>(open(file));
+    }
+
+    /**
+     * Opens a changelog for its entries to be read on demand. Only its index
+     * is read by this method.
+     */
+    static IndexedLog open(File file) throws IOException {
+        int version = getVersion(file);
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of compact changelog " + file);
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(in.length() - 8);
+            long indexOffset = in.readLong();
+            in.seek(indexOffset);
+
+            DataInputStream index = new DataInputStream(new BufferedInputStream(new RandomAccessFileInputStream(in)));
+            int entryCount = index.readInt();
+            int[] revisions = new int[entryCount];
+            long[] entryOffsets = new long[entryCount];
+            int[] actionCounts = new int[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                revisions[i] = index.readInt();
+                entryOffsets[i] = index.readLong();
+                actionCounts[i] = index.readInt();
+            }
+
+            long[] stringOffsets = new long[index.readInt()];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = index.readLong();
+            }
+
+            return new IndexedLog(file, revisions, entryOffsets, actionCounts, stringOffsets, indexOffset);
+        }
+    }
+
+    /**
+     * The entries of a compact changelog, read from disk when requested.
+     *
+     * Entries that have been read are softly kept, and their actions are
+     * not read until they are asked for. Each record (an entry, its actions
+     * or a string) is read with a single call into a buffer and decoded from
+     * there. The file is opened once for every entry or actions read, unless
+     * it's kept open with {@link #keepOpen()} to read many of them (eg: a
+     * page), and once for every {@link #ITERATION_BATCH_SIZE} entries when
+     * iterating.
+     */
+    static final class IndexedLog extends AbstractList<LogEntry> {
+
+        private static final int MAX_CACHED_STRINGS = 1024;
+        private static final int ITERATION_BATCH_SIZE = 64;
+
+        private final File file;
+        private final int[] revisions;
+        private final long[] entryOffsets;
+        private final int[] actionCounts;
+        private final long[] stringOffsets;
+        private final long stringsEnd;
+        private final SoftReference<LogEntry>[] entries;
+        private ChangeLogSet<?> parent;
+
+        /**
+         * The changelog file while it's kept open, and how many callers want
+         * it open.
+         */
+        private RandomAccessFile openFile;
+        private int openCount;
+        private byte[] buffer = new byte[256];
+
+        /**
+         * Most used strings (users, types, etc.), so that they're not read
+         * again for every entry.
+         */
+        private final Map<Integer, String> stringCache = new LinkedHashMap<Integer, String>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > MAX_CACHED_STRINGS;
+            }
+        };
+
+        @SuppressWarnings("unchecked")
+        private IndexedLog(File file, int[] revisions, long[] entryOffsets, int[] actionCounts, long[] stringOffsets, long stringsEnd) {
+            this.file = file;
+            this.revisions = revisions;
+            this.entryOffsets = entryOffsets;
+            this.actionCounts = actionCounts;
+            this.stringOffsets = stringOffsets;
+            this.stringsEnd = stringsEnd;
+            this.entries = new SoftReference[revisions.length];
+        }
+
+        /**
+         * Sets the change set given to every entry read.
+         */
+        synchronized void setParent(ChangeLogSet<?> parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public int size() {
+            return revisions.length;
+        }
+
+        /**
+         * @return the revision of an entry, without reading it
+         */
+        int getRevision(int index) {
+            return revisions[index];
+        }
+
+        /**
+         * @return the number of actions of every entry, without reading them
+         */
+        long getTotalActionsCount() {
+            long total = 0;
+            for (int count : actionCounts) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Keeps the changelog file open until the returned object is closed,
+         * so that reading many entries opens it only once.
+         */
+        synchronized Closeable keepOpen() throws IOException {
+            if (openCount == 0) {
+                openFile = new RandomAccessFile(file, "r");
+            }
+            openCount++;
+
+            AtomicBoolean closed = new AtomicBoolean();
+            return () -> {
+                if (closed.compareAndSet(false, true)) {
+                    release();
+                }
+            };
+        }
+
+        private synchronized void release() throws IOException {
+            if (--openCount == 0) {
+                RandomAccessFile toClose = openFile;
+                openFile = null;
+                toClose.close();
+            }
+        }
+
+        /**
+         * An entry that cannot be read is logged and replaced with one that
+         * only has its revision (and no actions), so that the rest of the
+         * change set can still be shown. It's not kept, so it's read again
+         * the next time.
+         */
+        @Override
+        public synchronized LogEntry get(int index) {
+            LogEntry log = getIfReadable(index);
+            if (log == null) {
+                log = new LogEntry();
+                log.setRevision(revisions[index]);
+                if (parent != null) {
+                    log.setParent(parent);
+                }
+            }
+            return log;
+        }
+
+        /**
+         * Iterates through the entries reading them in batches. Entries that
+         * cannot be read are logged and skipped.
+         */
+        @Override
+        public Iterator<LogEntry> iterator() {
+            return new Iterator<LogEntry>() {
+
+                private final List<LogEntry> batch = new ArrayList<>();
+                private int batchPosition;
+                private int nextIndex;
+
+                @Override
+                public boolean hasNext() {
+                    while (batchPosition == batch.size() && nextIndex < size()) {
+                        readBatch();
+                    }
+                    return batchPosition < batch.size();
+                }
+
+                @Override
+                public LogEntry next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return batch.get(batchPosition++);
+                }
+
+                private void readBatch() {
+                    batch.clear();
+                    batchPosition = 0;
+                    int end = Math.min(size(), nextIndex + ITERATION_BATCH_SIZE);
+                    synchronized (IndexedLog.this) {
+                        try (Closeable open = keepOpen()) {
+                            for (; nextIndex < end; nextIndex++) {
+                                LogEntry log = getIfReadable(nextIndex);
+                                if (log != null) {
+                                    batch.add(log);
+                                }
+                            }
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.WARNING, "Unable to read entries of " + file, ex);
+                            nextIndex = end;
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * @return the entry, or null (after logging why) if it can't be read
+         */
+        private synchronized LogEntry getIfReadable(int index) {
+            SoftReference<LogEntry> reference = entries[index];
+            LogEntry log = reference != null ? reference.get() : null;
+            if (log == null) {
+                try {
+                    log = readEntry(index);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to read entry " + index + " of " + file, ex);
+                    return null;
+                }
+                entries[index] = new SoftReference<>(log);
+            }
+            return log;
+        }
+
+        private LogEntry readEntry(int index) throws IOException {
+            try (Closeable open = keepOpen()) {
+                ByteBuffer header = readRecord(entryOffsets[index], ENTRY_HEADER_SIZE);
+                int revision = header.getInt();
+                long timestamp = header.getLong();
+                int user = header.getInt();
+                int msg = header.getInt();
+                int actionCount = header.getInt();
+
+                LogEntry log = new LogEntry();
+                log.setRevision(revision);
+                if (timestamp != NO_DATE) {
+                    log.setDate(new Date(timestamp));
+                }
+                log.setUser(readString(user));
+                log.setMsg(readString(msg));
+                log.setActionsLoader(actionCount, (limit) -> readActions(index, limit));
+                if (parent != null) {
+                    log.setParent(parent);
+                }
+                return log;
+            }
+        }
+
+        /**
+         * Reads the first actions of an entry.
+         */
+        private synchronized List<Action> readActions(int index, int limit) throws IOException {
+            try (Closeable open = keepOpen()) {
+                int actionCount = Math.max(0, Math.min(limit, actionCounts[index]));
+                ByteBuffer record = readRecord(entryOffsets[index] + ENTRY_HEADER_SIZE, actionCount * ACTION_SIZE);
+                int[] references = new int[actionCount * 6];
+                record.asIntBuffer().get(references);
+
+                List<Action> actions = new ArrayList<>(actionCount);
+                for (int i = 0; i < references.length; i += 6) {
+                    Action action = new Action();
+                    action.setType(readString(references[i]));
+                    action.setObjectGuid(readString(references[i + 1]));
+                    action.setObjectType(readString(references[i + 2]));
+                    action.setObjectTypeGuid(readString(references[i + 3]));
+                    action.setObjectName(readString(references[i + 4]));
+                    action.setObjectDescription(readString(references[i + 5]));
+                    actions.add(action);
+                }
+                return actions;
+            }
+        }
+
+        /**
+         * Strings are one after the other, so the length of each record is
+         * known from the offset of the next one.
+         */
+        private String readString(int index) throws IOException {
+            if (index == NULL_INDEX) {
+                return null;
+            }
+            if (index < 0 || index >= stringOffsets.length) {
+                throw new IOException("Invalid string index " + index + " in compact changelog " + file);
+            }
+
+            String value = stringCache.get(index);
+            if (value == null) {
+                long end = index + 1 < stringOffsets.length ? stringOffsets[index + 1] : stringsEnd;
+                ByteBuffer record = readRecord(stringOffsets[index], (int) (end - stringOffsets[index]));
+                int length = record.getInt();
+                if (length != record.remaining()) {
+                    throw new IOException("Invalid length of string " + index + " in compact changelog " + file);
+                }
+                value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+                stringCache.put(index, value);
+            }
+            return value;
+        }
+
+        /**
+         * Reads a whole record into the buffer. Only valid until the next
+         * record is read, and while the file is kept open.
+         */
+        private ByteBuffer readRecord(long offset, int length) throws IOException {
+            if (length < 0 || offset < 0 || offset + length > stringsEnd) {
+                throw new IOException("Invalid record at " + offset + " in compact changelog " + file);
+            }
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+
+            openFile.seek(offset);
+            openFile.readFully(buffer, 0, length);
+            return ByteBuffer.wrap(buffer, 0, length);
+        }
+    }
+
+    private static final class StringTable {
+
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+
+        void add(String value) {
+            if (value != null) {
+                indexes.putIfAbsent(value, indexes.size());
+            }
+        }
+
+        int indexOf(String value) {
+            return value == null ? NULL_INDEX : indexes.get(value);
+        }
+
+        int size() {
+            return indexes.size();
+        }
+
+        Iterable<String> values() {
+            return indexes.keySet();
+        }
+    }
+
+    private static final class RandomAccessFileInputStream extends InputStream {
+
+        private final RandomAccessFile file;
+
+        RandomAccessFileInputStream(RandomAccessFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return file.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return file.read(buffer, offset, length);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GXSCompactChangeLog.class.getName());
+}
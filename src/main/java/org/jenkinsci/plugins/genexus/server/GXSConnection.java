@@ -27,6 +27,7 @@ import hudson.Extension;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import java.io.Serializable;
+import java.util.Objects;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.export.Exported;
@@ -74,6 +75,51 @@ public class GXSConnection extends AbstractDescribableImpl<GXSConnection> implem
         return kbVersion;
     }
 
+    /**
+     * Two connections are considered equal when they point to the same KB
+     * version on the same server, using the same credentials. Jobs using
+     * other credentials must not see what a connection obtained, as they
+     * may not even have access to the KB.
+     */
+    @Override
+    public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        }
+
+        if (that == null || getClass() != that.getClass()) {
+            return false;
+        }
+
+        GXSConnection thatConnection = (GXSConnection) that;
+        return getServerURL().equals(thatConnection.getServerURL())
+                && Objects.equals(kbName, thatConnection.kbName)
+                && Objects.equals(StringUtils.trimToEmpty(kbVersion), StringUtils.trimToEmpty(thatConnection.kbVersion))
+                && Objects.equals(StringUtils.trimToEmpty(credentialsId), StringUtils.trimToEmpty(thatConnection.credentialsId));
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 59 * hash + Objects.hashCode(getServerURL());
+        hash = 59 * hash + Objects.hashCode(kbName);
+        hash = 59 * hash + Objects.hashCode(StringUtils.trimToEmpty(kbVersion));
+        hash = 59 * hash + Objects.hashCode(StringUtils.trimToEmpty(credentialsId));
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getServerURL()).append("/").append(kbName);
+
+        if (StringUtils.isNotBlank(kbVersion)) {
+            sb.append(String.format(" (ver.%s)", kbVersion));
+        }
+
+        return sb.toString();
+    }
+
     @Extension
     public static class DescriptorImpl extends Descriptor<GXSConnection> {
 
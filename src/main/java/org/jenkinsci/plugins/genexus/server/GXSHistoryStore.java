@@ -0,0 +1,349 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import hudson.Util;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+
+/**
+ *
+ * @author jlr
+ *
+ * Local copy of the history of a KB version, kept on the master.
+ *
+ * Past revisions never change, so every log entry obtained from GXserver is
+ * appended to the store and changelogs are then served from it. Only the
+ * revisions committed after the newest stored one need to be requested to
+ * GXserver.
+ *
+ * The store keeps:
+ * <ul>
+ * <li>entries.xml: the XML element of each log entry, one after the other</li>
+ * <li>entries.idx: revision, timestamp, offset and length of each entry</li>
+ * <li>coverage.properties: the period of time for which every entry is known
+ * to be in the store</li>
+ * </ul>
+ */
+final class GXSHistoryStore {
+
+    private static final String ENTRIES_FILE_NAME = "entries.xml";
+    private static final String INDEX_FILE_NAME = "entries.idx";
+    private static final String COVERAGE_FILE_NAME = "coverage.properties";
+    private static final String COVERED_FROM = "coveredFrom";
+    private static final String COVERED_TO = "coveredTo";
+    private static final String SEPARATOR = "\t";
+
+    private static final ConcurrentMap<GXSConnection, GXSHistoryStore> STORES = new ConcurrentHashMap<>();
+
+    private final File folder;
+    private final Map<Integer, IndexEntry> index = new HashMap<>();
+    private Date coveredFrom;
+    private Date coveredTo;
+    private boolean loaded = false;
+
+    GXSHistoryStore(File folder) {
+        this.folder = folder;
+    }
+
+    static GXSHistoryStore forConnection(GXSConnection gxsConnection) {
+        return STORES.computeIfAbsent(gxsConnection, (key) -> new GXSHistoryStore(getFolder(key)));
+    }
+
+    private static File getFolder(GXSConnection gxsConnection) {
+        String key = gxsConnection.getServerURL() + "\n"
+                + gxsConnection.getKbName() + "\n"
+                + StringUtils.trimToEmpty(gxsConnection.getKbVersion()) + "\n"
+                + StringUtils.trimToEmpty(gxsConnection.getCredentialsId());
+
+        File root = new File(Jenkins.getInstance().getRootDir(), "genexus/history");
+        return new File(root, Util.getDigestOf(key));
+    }
+
+    /**
+     * Writes a changelog with every revision committed after a given date, up
+     * to another one. Only the revisions not already in the store are
+     * requested through the fetcher.
+     *
+     * The store is locked only to read and update it: the fetcher, which calls
+     * GXserver, runs without holding the lock so that a slow server does not
+     * block every other job of the same KB version.
+     *
+     * @param fromTimestamp revisions at this date are excluded
+     * @param toTimestamp revisions at this date are included
+     * @param fetcher gets the revisions of a period from GXserver
+     * @param changelogFile file where the changelog is written
+     * @return false if the revisions could not be fetched
+     */
+    boolean writeChangeLog(Date fromTimestamp, Date toTimestamp, HistoryFetcher fetcher, File changelogFile) throws IOException, InterruptedException {
+        Date fetchFrom;
+        synchronized (this) {
+            load();
+            fetchFrom = getMissingFrom(fromTimestamp, toTimestamp);
+        }
+
+        if (fetchFrom != null) {
+            List<LogEntry> entries = fetcher.fetch(fetchFrom, toTimestamp);
+            if (entries == null) {
+                return false;
+            }
+
+            synchronized (this) {
+                append(entries);
+                addCoverage(fetchFrom, toTimestamp);
+            }
+        }
+
+        synchronized (this) {
+            writeEntries(fromTimestamp.getTime(), toTimestamp.getTime(), changelogFile);
+        }
+        return true;
+    }
+
+    /**
+     * @return the start of the period that must be requested to GXserver, or
+     * null if the store already covers the whole period
+     */
+    private Date getMissingFrom(Date fromTimestamp, Date toTimestamp) {
+        if (coveredFrom == null || fromTimestamp.before(coveredFrom)) {
+            return fromTimestamp;
+        }
+
+        return toTimestamp.after(coveredTo) ? coveredTo : null;
+    }
+
+    /**
+     * Extends the coverage with a fetched period, when it overlaps or is
+     * contiguous with the covered one. Otherwise the covered period is kept,
+     * as a gap between both is not known to be in the store.
+     */
+    private void addCoverage(Date from, Date to) throws IOException {
+        if (coveredFrom == null) {
+            saveCoverage(from, to);
+        } else if (!from.after(coveredTo) && !to.before(coveredFrom)) {
+            saveCoverage(
+                    from.before(coveredFrom) ? from : coveredFrom,
+                    to.after(coveredTo) ? to : coveredTo);
+        }
+    }
+
+    private void writeEntries(long fromMillis, long toMillis, File changelogFile) throws IOException {
+        List<IndexEntry> selected = new ArrayList<>();
+        for (IndexEntry entry : index.values()) {
+            if (entry.timestamp > fromMillis && entry.timestamp <= toMillis) {
+                selected.add(entry);
+            }
+        }
+
+        // recent changes first, as TeamDev does
+        selected.sort(Comparator.comparingInt((IndexEntry entry) -> entry.revision).reversed());
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(changelogFile))) {
+            out.write(GXSChangeLogWriter.LOG_START);
+            if (!selected.isEmpty()) {
+                try (RandomAccessFile entries = new RandomAccessFile(getEntriesFile(), "r")) {
+                    byte[] buffer = new byte[8192];
+                    for (IndexEntry entry : selected) {
+                        if (buffer.length < entry.length) {
+                            buffer = new byte[entry.length];
+                        }
+                        entries.seek(entry.offset);
+                        entries.readFully(buffer, 0, entry.length);
+                        out.write(buffer, 0, entry.length);
+                    }
+                }
+            }
+            out.write(GXSChangeLogWriter.LOG_END);
+        }
+    }
+
+    private void append(List<LogEntry> entries) throws IOException {
+        File entriesFile = getEntriesFile();
+        long offset = entriesFile.length();
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(entriesFile, true));
+                Writer indexWriter = new OutputStreamWriter(new FileOutputStream(getIndexFile(), true), StandardCharsets.UTF_8)) {
+            for (LogEntry logEntry : entries) {
+                if (index.containsKey(logEntry.getRevision())) {
+                    continue;
+                }
+
+                byte[] xml = GXSChangeLogWriter.toXml(logEntry);
+                out.write(xml);
+
+                IndexEntry entry = new IndexEntry(logEntry.getRevision(), logEntry.getTimestamp(), offset, xml.length);
+                index.put(entry.revision, entry);
+                offset += xml.length;
+
+                // the entry must be in the entries file before it is indexed
+                out.flush();
+                indexWriter.write(entry.toLine());
+            }
+        }
+    }
+
+    private void saveCoverage(Date from, Date to) throws IOException {
+        Properties coverage = new Properties();
+        coverage.setProperty(COVERED_FROM, String.valueOf(from.getTime()));
+        coverage.setProperty(COVERED_TO, String.valueOf(to.getTime()));
+
+        File coverageFile = new File(folder, COVERAGE_FILE_NAME);
+        File tempFile = new File(folder, COVERAGE_FILE_NAME + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            coverage.store(out, null);
+        }
+        Files.move(tempFile.toPath(), coverageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        coveredFrom = DateUtils.cloneIfNotNull(from);
+        coveredTo = DateUtils.cloneIfNotNull(to);
+    }
+
+    private void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create folder " + folder);
+        }
+
+        long entriesLength = getEntriesFile().length();
+        File indexFile = getIndexFile();
+        if (indexFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    IndexEntry entry = IndexEntry.fromLine(line);
+                    // ignore anything that did not make it to the entries file
+                    if (entry != null && entry.offset + entry.length <= entriesLength) {
+                        index.put(entry.revision, entry);
+                    }
+                }
+            }
+        }
+
+        File coverageFile = new File(folder, COVERAGE_FILE_NAME);
+        if (coverageFile.exists()) {
+            Properties coverage = new Properties();
+            try (BufferedReader reader = Files.newBufferedReader(coverageFile.toPath(), StandardCharsets.UTF_8)) {
+                coverage.load(reader);
+            }
+
+            try {
+                coveredFrom = new Date(Long.parseLong(coverage.getProperty(COVERED_FROM)));
+                coveredTo = new Date(Long.parseLong(coverage.getProperty(COVERED_TO)));
+            } catch (NumberFormatException ex) {
+                LOGGER.log(Level.WARNING, "Ignoring invalid " + coverageFile, ex);
+                coveredFrom = null;
+                coveredTo = null;
+            }
+        }
+
+        loaded = true;
+    }
+
+    private File getEntriesFile() {
+        return new File(folder, ENTRIES_FILE_NAME);
+    }
+
+    private File getIndexFile() {
+        return new File(folder, INDEX_FILE_NAME);
+    }
+
+    /**
+     * Gets the history of a period from GXserver.
+     */
+    @FunctionalInterface
+    interface HistoryFetcher {
+
+        /**
+         * @param fromTimestamp revisions at this date are excluded
+         * @param toTimestamp revisions at this date are included
+         * @return null if the history could not be obtained
+         */
+        List<LogEntry> fetch(Date fromTimestamp, Date toTimestamp) throws IOException, InterruptedException;
+    }
+
+    private static final class IndexEntry {
+
+        final int revision;
+        final long timestamp;
+        final long offset;
+        final int length;
+
+        IndexEntry(int revision, long timestamp, long offset, int length) {
+            this.revision = revision;
+            this.timestamp = timestamp;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        String toLine() {
+            return revision + SEPARATOR + timestamp + SEPARATOR + offset + SEPARATOR + length + "\n";
+        }
+
+        static IndexEntry fromLine(String line) {
+            String[] fields = line.split(SEPARATOR);
+            if (fields.length != 4) {
+                return null;
+            }
+
+            try {
+                return new IndexEntry(
+                        Integer.parseInt(fields[0]),
+                        Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2]),
+                        Integer.parseInt(fields[3]));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GXSHistoryStore.class.getName());
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jenkins.security.csrf.CrumbExclusion;
+import jenkins.triggers.SCMTriggerItem;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ *
+ * @author jlr
+ *
+ * Lets GXserver (or any script watching it) notify commits to a KB version,
+ * by a POST to /genexus-server/notifyCommit?serverURL=...&amp;kbName=...&amp;kbVersion=...&amp;revision=...
+ *
+ * Jobs using that KB version are polled right away, instead of waiting for
+ * their next scheduled polling. As anyone may call it, a notification never
+ * starts a build by itself: polling still checks the revision on GXserver,
+ * and the response doesn't tell which jobs were found. Only jobs having an
+ * SCM polling trigger are polled, so polling can be set to a long interval
+ * to just be a safety net.
+ *
+ * Notifications only make polling skip the revision cache when its last
+ * lookup of the KB version is older than a few seconds, so that repeated
+ * calls can't turn every poll into a call to GXserver. For the same reason,
+ * a KB version accepts a notification every few seconds at most, and jobs
+ * are found through the map of jobs by KB version kept for polling instead
+ * of looking at every job for each call.
+ *
+ * Callers (eg: a GXserver hook) can't send a crumb, so the URL is excluded
+ * from CSRF protection.
+ */
+@Extension
+public class GXSNotifyCommitAction implements UnprotectedRootAction {
+
+    private static final String URL_NAME = "genexus-server";
+    private static final long MIN_LOOKUP_AGE_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long MIN_NOTIFICATION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * When each KB version used by some job was last notified. Only recent
+     * notifications are kept.
+     */
+    private static final ConcurrentMap<String, Long> LAST_NOTIFICATIONS = new ConcurrentHashMap<>();
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * @param serverURL GXserver URL
+     * @param kbName name of the KB in the server
+     * @param kbVersion KB version where the commit was made. The trunk
+     * version if empty.
+     * @param revision committed revision, if known. Jobs that already built it
+     * (or a later one) are not polled.
+     */
+    @RequirePOST
+    public HttpResponse doNotifyCommit(@QueryParameter String serverURL, @QueryParameter String kbName,
+            @QueryParameter String kbVersion, @QueryParameter String revision) {
+        if (StringUtils.isBlank(serverURL) || StringUtils.isBlank(kbName)) {
+            return HttpResponses.errorWithoutStack(400, "serverURL and kbName are required");
+        }
+
+        long committedRevision = 0;
+        if (StringUtils.isNotBlank(revision)) {
+            try {
+                committedRevision = Long.parseLong(revision.trim());
+            } catch (NumberFormatException ex) {
+                return HttpResponses.errorWithoutStack(400, "Invalid revision: " + revision);
+            }
+        }
+
+        int scheduled = 0;
+        Set<SCMTriggerItem> polled = new HashSet<>();
+
+        // callers are usually anonymous, so jobs are looked for (and polled)
+        // as the system
+        try (ACLContext ctx = ACL.as(ACL.SYSTEM)) {
+            // the same KB version may be used with different credentials
+            Map<GXSConnection, List<Job<?, ?>>> matches = new LinkedHashMap<>();
+            for (Map.Entry<GXSConnection, List<Job<?, ?>>> entry : GXSPollingScheduler.getJobsByKb().entrySet()) {
+                if (matches(entry.getKey(), serverURL, kbName, kbVersion)) {
+                    matches.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            if (!matches.isEmpty() && !acceptNotification(serverURL, kbName, kbVersion)) {
+                LOGGER.log(Level.FINE, "Ignored commit notified to {0}/{1} (ver.{2}), too soon after the previous one",
+                        new Object[]{serverURL, kbName, StringUtils.trimToEmpty(kbVersion)});
+                return HttpResponses.errorWithoutStack(429, "Too many notifications for this KB version, try again later");
+            }
+
+            for (Map.Entry<GXSConnection, List<Job<?, ?>>> entry : matches.entrySet()) {
+                GXSConnection gxsConnection = entry.getKey();
+                List<SCMTriggerItem> toPoll = new ArrayList<>();
+                for (Job<?, ?> job : entry.getValue()) {
+                    SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+                    if (item != null && !polled.contains(item) && !isKnown(job, gxsConnection, committedRevision)) {
+                        toPoll.add(item);
+                    }
+                }
+
+                if (toPoll.isEmpty()) {
+                    continue;
+                }
+
+                // the next lookup must go to the server (unless a recent one
+                // may already know the commit). Every job polled for this
+                // connection then shares it.
+                GXSRevisionCache.invalidate(gxsConnection, committedRevision, MIN_LOOKUP_AGE_MILLIS);
+
+                for (SCMTriggerItem item : toPoll) {
+                    if (polled.add(item) && item.schedulePolling()) {
+                        LOGGER.log(Level.FINE, "Scheduled polling of {0} for a commit to {1}", new Object[]{item.asItem().getFullName(), gxsConnection});
+                        scheduled++;
+                    }
+                }
+            }
+        }
+
+        LOGGER.log(Level.FINE, "Commit notified to {0}/{1} (ver.{2}, rev.{3}): scheduled polling of {4} jobs",
+                new Object[]{serverURL, kbName, StringUtils.trimToEmpty(kbVersion), StringUtils.trimToEmpty(revision), scheduled});
+        return HttpResponses.plainText("Scheduled polling of " + scheduled + " job(s)\n");
+    }
+
+    /**
+     * @return true if the connection is the notified KB version, whatever
+     * the credentials
+     */
+    private static boolean matches(GXSConnection gxsConnection, String serverURL, String kbName, String kbVersion) {
+        return sameServerURL(gxsConnection.getServerURL(), serverURL)
+                && kbName.trim().equalsIgnoreCase(StringUtils.trimToEmpty(gxsConnection.getKbName()))
+                && StringUtils.trimToEmpty(kbVersion).equalsIgnoreCase(StringUtils.trimToEmpty(gxsConnection.getKbVersion()));
+    }
+
+    /**
+     * @return false if the KB version was notified less than
+     * {@link #MIN_NOTIFICATION_INTERVAL_MILLIS} ago
+     */
+    private static boolean acceptNotification(String serverURL, String kbName, String kbVersion) {
+        long now = System.currentTimeMillis();
+        LAST_NOTIFICATIONS.values().removeIf((notifiedAt) -> now - notifiedAt >= MIN_NOTIFICATION_INTERVAL_MILLIS);
+
+        String key = StringUtils.removeEnd(serverURL.trim(), "/").toLowerCase(Locale.ROOT)
+                + "\n" + kbName.trim().toLowerCase(Locale.ROOT)
+                + "\n" + StringUtils.trimToEmpty(kbVersion).toLowerCase(Locale.ROOT);
+        return LAST_NOTIFICATIONS.putIfAbsent(key, now) == null;
+    }
+
+    private static boolean sameServerURL(String url1, String url2) {
+        return StringUtils.removeEnd(StringUtils.trimToEmpty(url1), "/").equalsIgnoreCase(StringUtils.removeEnd(StringUtils.trimToEmpty(url2), "/"));
+    }
+
+    /**
+     * @return true if the job already checked out the revision (or a later
+     * one), according to its revision index
+     */
+    private static boolean isKnown(Job<?, ?> job, GXSConnection gxsConnection, long committedRevision) {
+        if (committedRevision <= 0) {
+            return false;
+        }
+
+        try {
+            GXSInfo latest = GXSPollingScheduler.getIndex(job, gxsConnection).getLatest();
+            return latest != null && latest.revision >= committedRevision;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to read revision index of " + job.getFullName(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Lets notifications in without a crumb, as they come from outside
+     * Jenkins.
+     */
+    @Extension
+    public static class CrumbExclusionImpl extends CrumbExclusion {
+
+        @Override
+        public boolean process(HttpServletRequest req, HttpServletResponse resp, FilterChain chain) throws IOException, ServletException {
+            String pathInfo = req.getPathInfo();
+            if (pathInfo != null && pathInfo.startsWith("/" + URL_NAME + "/")) {
+                chain.doFilter(req, resp);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GXSNotifyCommitAction.class.getName());
+}
@@ -0,0 +1,331 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.PeriodicWork;
+import hudson.model.listeners.ItemListener;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ *
+ * @author jlr
+ *
+ * Polls the jobs using each KB version at a pace that depends on how
+ * recently something was committed to it: KBs with recent commits are polled
+ * often, dormant ones rarely.
+ *
+ * Each KB version gets its own starting point within its interval, so polls
+ * are spread over time instead of all starting at the same minute. Also
+ * limits how many history calls are made to each GXserver at the same time.
+ *
+ * The jobs using each KB version are looked for only when items change.
+ * The last commit of a KB version is first taken from the revision indexes
+ * of those jobs, so that active KBs keep being polled often after a restart.
+ */
+final class GXSPollingScheduler {
+
+    /**
+     * A KB is polled at an interval of 1/ACTIVITY_FACTOR of the time since
+     * its last commit (within the configured min and max intervals). Eg: a
+     * commit made 2 hours ago gets the KB polled every 15 minutes.
+     */
+    static final int ACTIVITY_FACTOR = 8;
+
+    private static final ConcurrentMap<GXSConnection, Long> LAST_COMMITS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<GXSConnection, Long> LAST_POLLS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, ServerLimit> SERVER_LIMITS = new ConcurrentHashMap<>();
+
+    /**
+     * Set when items are created, changed or removed, so that the jobs of
+     * each KB version are looked for again.
+     */
+    private static final AtomicBoolean ITEMS_CHANGED = new AtomicBoolean(true);
+    private static volatile Map<GXSConnection, List<Job<?, ?>>> jobsByKb;
+
+    private GXSPollingScheduler() {
+    }
+
+    /**
+     * Lets the scheduler know the last revision of a KB version, as found by
+     * polling or checkouts.
+     */
+    static void recordRevision(GXSConnection gxsConnection, GXSInfo info) {
+        if (info != null && info.revision > 0 && info.revisionDate != null) {
+            LAST_COMMITS.merge(gxsConnection, info.revisionDate.getTime(), Math::max);
+        }
+    }
+
+    /**
+     * @return how often a KB version whose last commit was made at
+     * lastCommitMillis (0 if unknown) is to be polled
+     */
+    static long getIntervalMillis(long lastCommitMillis, long nowMillis, long minMillis, long maxMillis) {
+        if (lastCommitMillis <= 0) {
+            return maxMillis;
+        }
+
+        long interval = (nowMillis - lastCommitMillis) / ACTIVITY_FACTOR;
+        return Math.max(minMillis, Math.min(maxMillis, interval));
+    }
+
+    /**
+     * Gets the jobs using each KB version. They are looked for again only
+     * when items have changed. Must be called as the system.
+     */
+    static synchronized Map<GXSConnection, List<Job<?, ?>>> getJobsByKb() {
+        Map<GXSConnection, List<Job<?, ?>>> currentJobsByKb = jobsByKb;
+        if (ITEMS_CHANGED.getAndSet(false) || currentJobsByKb == null) {
+            currentJobsByKb = findJobs();
+            jobsByKb = currentJobsByKb;
+            LAST_POLLS.keySet().retainAll(currentJobsByKb.keySet());
+            LAST_COMMITS.keySet().retainAll(currentJobsByKb.keySet());
+            seedLastCommits(currentJobsByKb);
+        }
+        return currentJobsByKb;
+    }
+
+    /**
+     * @return the jobs to poll for each KB version (main and additional
+     * versions of every GeneXus Server SCM)
+     */
+    private static Map<GXSConnection, List<Job<?, ?>>> findJobs() {
+        Map<GXSConnection, List<Job<?, ?>>> jobsByKb = new LinkedHashMap<>();
+        for (Job<?, ?> job : Jenkins.getInstance().getAllItems(Job.class)) {
+            SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+            if (item == null) {
+                continue;
+            }
+
+            for (SCM scm : item.getSCMs()) {
+                if (!(scm instanceof GeneXusServerSCM)) {
+                    continue;
+                }
+
+                GeneXusServerSCM gxsScm = (GeneXusServerSCM) scm;
+                List<String> versions = new ArrayList<>();
+                versions.add(gxsScm.getKbVersion());
+                versions.addAll(gxsScm.getAdditionalKbVersionList());
+                for (String version : versions) {
+                    GXSConnection gxsConnection = new GXSConnection(gxsScm.getServerURL(), gxsScm.getCredentialsId(), gxsScm.getKbName(), version);
+                    jobsByKb.computeIfAbsent(gxsConnection, (key) -> new ArrayList<>()).add(job);
+                }
+            }
+        }
+
+        return jobsByKb;
+    }
+
+    /**
+     * Takes the last commit of the KB versions not seen yet (eg: after a
+     * restart) from the latest revision built by their jobs.
+     */
+    private static void seedLastCommits(Map<GXSConnection, List<Job<?, ?>>> jobsByKb) {
+        for (Map.Entry<GXSConnection, List<Job<?, ?>>> entry : jobsByKb.entrySet()) {
+            GXSConnection gxsConnection = entry.getKey();
+            if (LAST_COMMITS.containsKey(gxsConnection)) {
+                continue;
+            }
+
+            for (Job<?, ?> job : entry.getValue()) {
+                try {
+                    recordRevision(gxsConnection, getIndex(job, gxsConnection).getLatest());
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to read revision index of " + job.getFullName(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the revision index where the job keeps the given KB version
+     */
+    static GXSRevisionIndex getIndex(Job<?, ?> job, GXSConnection gxsConnection) {
+        String version = StringUtils.trimToEmpty(gxsConnection.getKbVersion());
+        SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+        if (item != null) {
+            for (SCM scm : item.getSCMs()) {
+                if (scm instanceof GeneXusServerSCM && version.equalsIgnoreCase(StringUtils.trimToEmpty(((GeneXusServerSCM) scm).getKbVersion()))) {
+                    return GXSRevisionIndex.forJob(job);
+                }
+            }
+        }
+        return GXSRevisionIndex.forJob(job, gxsConnection.getKbVersion());
+    }
+
+    /**
+     * Runs a history call to a GXserver, waiting first until there are less
+     * than a given number of calls to that server running.
+     *
+     * @param maxCalls max number of calls at the same time. Zero or less
+     * means no limit.
+     */
+    static <T> T withServerLimit(String serverURL, int maxCalls, HistoryCall<T> call) throws IOException, InterruptedException {
+        if (maxCalls <= 0) {
+            return call.call();
+        }
+
+        Semaphore semaphore = SERVER_LIMITS.compute(serverURL,
+                (key, current) -> current != null && current.permits == maxCalls ? current : new ServerLimit(maxCalls)).semaphore;
+
+        semaphore.acquire();
+        try {
+            return call.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * A history call to GXserver.
+     */
+    @FunctionalInterface
+    interface HistoryCall<T> {
+
+        T call() throws IOException, InterruptedException;
+    }
+
+    private static final class ServerLimit {
+
+        // a changed limit gets a new semaphore. Calls already running
+        // release the old one.
+        final int permits;
+        final Semaphore semaphore;
+
+        ServerLimit(int permits) {
+            this.permits = permits;
+            this.semaphore = new Semaphore(permits, true);
+        }
+    }
+
+    /**
+     * Checks every minute which KB versions are due for polling, and polls
+     * the jobs using them.
+     */
+    @Extension
+    public static class PeriodicWorkImpl extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            GeneXusServerSCM.DescriptorImpl descriptor = Jenkins.getInstance().getDescriptorByType(GeneXusServerSCM.DescriptorImpl.class);
+            if (descriptor == null || !descriptor.isAdaptivePolling()) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            long minMillis = TimeUnit.MINUTES.toMillis(descriptor.getMinPollingInterval());
+            long maxMillis = Math.max(minMillis, TimeUnit.MINUTES.toMillis(descriptor.getMaxPollingInterval()));
+
+            try (ACLContext ctx = ACL.as(ACL.SYSTEM)) {
+                Set<SCMTriggerItem> polled = new HashSet<>();
+                for (Map.Entry<GXSConnection, List<Job<?, ?>>> entry : getJobsByKb().entrySet()) {
+                    GXSConnection gxsConnection = entry.getKey();
+                    long interval = getIntervalMillis(LAST_COMMITS.getOrDefault(gxsConnection, 0L), now, minMillis, maxMillis);
+
+                    // KBs seen for the first time are placed at some point
+                    // of their interval, so they don't all poll together
+                    long lastPoll = LAST_POLLS.computeIfAbsent(gxsConnection,
+                            (key) -> now - Math.floorMod(key.hashCode(), interval));
+                    if (now - lastPoll < interval) {
+                        continue;
+                    }
+
+                    LAST_POLLS.put(gxsConnection, now);
+                    for (Job<?, ?> job : entry.getValue()) {
+                        SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+                        if (item == null || !job.isBuildable()) {
+                            continue;
+                        }
+
+                        // a job using several due KB versions is polled once
+                        if (polled.add(item) && !item.schedulePolling()) {
+                            LOGGER.log(Level.FINE, "Unable to schedule polling of {0}", job.getFullName());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the scheduler look for the jobs of each KB version again when
+     * items change.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLoaded() {
+            ITEMS_CHANGED.set(true);
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            ITEMS_CHANGED.set(true);
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            ITEMS_CHANGED.set(true);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            ITEMS_CHANGED.set(true);
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            ITEMS_CHANGED.set(true);
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GXSPollingScheduler.class.getName());
+}
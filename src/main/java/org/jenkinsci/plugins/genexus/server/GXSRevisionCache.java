@@ -0,0 +1,201 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ *
+ * @author jlr
+ *
+ * Master side cache of the last revision of remote KBs.
+ *
+ * Every job polling the same KB version with the same credentials shares one
+ * in-flight lookup, and its result is reused until it expires (also by the
+ * checkouts of those jobs).
+ */
+final class GXSRevisionCache {
+
+    /**
+     * Set this system property to the max number of seconds a job waits for
+     * a lookup started by another job.
+     */
+    static final String WAIT_TIMEOUT_PROPERTY = GXSRevisionCache.class.getName() + ".waitTimeout";
+    static final long DEFAULT_WAIT_TIMEOUT = 600;
+
+    private static final ConcurrentMap<GXSConnection, Lookup> LOOKUPS = new ConcurrentHashMap<>();
+
+    private GXSRevisionCache() {
+    }
+
+    /**
+     * Gets the last revision of a KB, either from a previous (or in-flight)
+     * lookup or by calling the given loader.
+     *
+     * @param gxsConnection KB whose last revision is requested
+     * @param fromTimestamp date from which the loader looks for revisions
+     * @param ttlMillis for how long a lookup result may be reused. Zero or
+     * negative values disable the cache.
+     * @param loader actual lookup of the revision
+     * @return the last revision info of the KB
+     */
+    static GXSInfo getLastRevision(GXSConnection gxsConnection, Date fromTimestamp, long ttlMillis, RevisionLoader loader) throws IOException, InterruptedException {
+        if (ttlMillis <= 0) {
+            return loader.load();
+        }
+
+        while (true) {
+            Lookup current = LOOKUPS.get(gxsConnection);
+            if (current != null && current.isUsableFor(fromTimestamp, ttlMillis)) {
+                return current.get(gxsConnection);
+            }
+
+            Lookup mine = new Lookup(fromTimestamp);
+            boolean registered = (current == null)
+                    ? LOOKUPS.putIfAbsent(gxsConnection, mine) == null
+                    : LOOKUPS.replace(gxsConnection, current, mine);
+
+            if (registered) {
+                return mine.run(gxsConnection, loader);
+            }
+        }
+    }
+
+    /**
+     * Forgets the known revision of the given KB because of a commit, unless
+     * it already includes the commit or its lookup started less than the
+     * given time ago (so that a burst of commits doesn't send every poll to
+     * the server).
+     *
+     * @param committedRevision the committed revision, or 0 if not known
+     * @param minAgeMillis lookups started more recently than this are kept
+     * @return true if the known revision was forgotten
+     */
+    static boolean invalidate(GXSConnection gxsConnection, long committedRevision, long minAgeMillis) {
+        Lookup current = LOOKUPS.get(gxsConnection);
+        if (current == null) {
+            return false;
+        }
+
+        if (current.future.isDone() && !current.future.isCompletedExceptionally()) {
+            GXSInfo info = current.future.getNow(null);
+            if (committedRevision > 0 && info != null && info.revision >= committedRevision) {
+                return false;
+            }
+        }
+
+        if (System.currentTimeMillis() - current.startedAt < minAgeMillis) {
+            return false;
+        }
+
+        return LOOKUPS.remove(gxsConnection, current);
+    }
+
+    @FunctionalInterface
+    interface RevisionLoader {
+
+        GXSInfo load() throws IOException, InterruptedException;
+    }
+
+    private static final class Lookup {
+
+        private final Date fromTimestamp;
+        private final CompletableFuture<GXSInfo> future = new CompletableFuture<>();
+        private final long startedAt;
+
+        Lookup(Date fromTimestamp) {
+            this.fromTimestamp = DateUtils.cloneIfNotNull(fromTimestamp);
+            // a revision committed while the lookup runs may be missed, so
+            // the result is as old as the lookup itself
+            this.startedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * An in-flight lookup is usable only if it looks at least as far back
+         * as the caller. A finished one must not be expired either, though
+         * if it found a revision that one is the latest no matter where the
+         * caller starts looking from.
+         */
+        boolean isUsableFor(Date from, long ttlMillis) {
+            if (!future.isDone()) {
+                return covers(from);
+            }
+
+            if (future.isCompletedExceptionally()
+                    || System.currentTimeMillis() - startedAt > ttlMillis) {
+                return false;
+            }
+
+            GXSInfo info = future.getNow(null);
+            return (info != null && info.revision > 0) || covers(from);
+        }
+
+        private boolean covers(Date from) {
+            return fromTimestamp == null || (from != null && !from.before(fromTimestamp));
+        }
+
+        GXSInfo run(GXSConnection gxsConnection, RevisionLoader loader) throws IOException, InterruptedException {
+            try {
+                GXSInfo info = loader.load();
+                future.complete(info);
+                return info;
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                LOOKUPS.remove(gxsConnection, this);
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        /**
+         * Waits for the result of the lookup. A lookup that takes longer than
+         * the wait timeout is dropped, so that the next caller starts a new
+         * one instead of waiting for it too.
+         */
+        GXSInfo get(GXSConnection gxsConnection) throws IOException, InterruptedException {
+            long timeout = Long.getLong(WAIT_TIMEOUT_PROPERTY, DEFAULT_WAIT_TIMEOUT);
+            try {
+                return timeout > 0 ? future.get(timeout, TimeUnit.SECONDS) : future.get();
+            } catch (TimeoutException e) {
+                LOOKUPS.remove(gxsConnection, this);
+                throw new IOException(String.format("Timed out after %d seconds waiting for the last revision of %s", timeout, gxsConnection), e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw new IOException(cause.getMessage(), cause);
+                }
+                if (cause instanceof InterruptedException) {
+                    throw new IOException("Shared revision lookup was interrupted", cause);
+                }
+                throw new IOException("Error checking for last revision", cause);
+            }
+        }
+    }
+}
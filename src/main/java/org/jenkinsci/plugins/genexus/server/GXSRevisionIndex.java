@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @author jlr
+ *
+ * Per job index of the revision checked out by each build.
+ *
+ * It's kept as an append-only ledger in the job folder (one line per build,
+ * with the build number and its {@link GXSInfo}), so that looking for the
+ * closest revision of a build does not require loading previous builds nor
+ * checking their revision files. The ledger is rewritten with just the
+ * indexed builds when lines of deleted builds outnumber them.
+ */
+public final class GXSRevisionIndex {
+
+    static final String INDEX_FILE_PREFIX = "genexus-revisions";
+    static final String INDEX_FILE_EXTENSION = ".log";
+    static final String INDEX_FILE_NAME = INDEX_FILE_PREFIX + INDEX_FILE_EXTENSION;
+    private static final String SEPARATOR = "\t";
+
+    private static final ConcurrentMap<String, GXSRevisionIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final TreeMap<Integer, GXSInfo> revisions = new TreeMap<>();
+    private int lineCount = 0;
+    private boolean loaded = false;
+
+    private GXSRevisionIndex(File file) {
+        this.file = file;
+    }
+
+    static GXSRevisionIndex forJob(Job<?, ?> job) {
+        return forFile(new File(job.getRootDir(), INDEX_FILE_NAME));
+    }
+
+    /**
+     * Gets the index of one of the additional KB versions that a job keeps
+     * up to date.
+     */
+    static GXSRevisionIndex forJob(Job<?, ?> job, String kbVersion) {
+        String fileName = INDEX_FILE_PREFIX + "-" + Util.rawEncode(kbVersion) + INDEX_FILE_EXTENSION;
+        return forFile(new File(job.getRootDir(), fileName));
+    }
+
+    private static GXSRevisionIndex forFile(File file) {
+        return INDEXES.computeIfAbsent(file.getAbsolutePath(), (key) -> new GXSRevisionIndex(file));
+    }
+
+    /**
+     * Forgets the indexes kept in memory for the jobs in a folder (and its
+     * subfolders).
+     */
+    private static void evict(File folder) {
+        String prefix = folder.getAbsolutePath() + File.separator;
+        INDEXES.keySet().removeIf((path) -> path.startsWith(prefix));
+    }
+
+    /**
+     * Forgets the indexes kept in memory for jobs whose folder is gone.
+     */
+    private static void evictMissing() {
+        INDEXES.values().removeIf((index) -> !index.file.getParentFile().isDirectory());
+    }
+
+    /**
+     * Records the revision checked out by a build.
+     */
+    synchronized void record(int buildNumber, GXSInfo info) throws IOException {
+        load();
+        revisions.put(buildNumber, info);
+        append(toLine(buildNumber, info, new ObjectMapper()));
+    }
+
+    /**
+     * Forgets the revision of a build (eg: because the build was deleted)
+     */
+    synchronized void forget(int buildNumber) throws IOException {
+        load();
+        if (revisions.remove(buildNumber) != null) {
+            append(buildNumber + SEPARATOR);
+            if (lineCount > 2 * revisions.size()) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * @return the revision of the given build or, if it has none, the one of
+     * the closest previous build that has a revision. Null if no such build
+     * is indexed.
+     */
+    synchronized GXSInfo findClosest(int buildNumber) throws IOException {
+        load();
+        Map.Entry<Integer, GXSInfo> entry = revisions.floorEntry(buildNumber);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * @return the revision of the most recent build that has one, or null if
+     * there is none.
+     */
+    synchronized GXSInfo getLatest() throws IOException {
+        load();
+        Map.Entry<Integer, GXSInfo> entry = revisions.lastEntry();
+        return entry != null ? entry.getValue() : null;
+    }
+
+    private void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+
+        if (file.exists()) {
+            ObjectMapper mapper = new ObjectMapper();
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineCount++;
+                    int separatorIndex = line.indexOf(SEPARATOR);
+                    if (separatorIndex <= 0) {
+                        continue;
+                    }
+
+                    try {
+                        int buildNumber = Integer.parseInt(line.substring(0, separatorIndex));
+                        String json = line.substring(separatorIndex + SEPARATOR.length());
+                        if (json.isEmpty()) {
+                            revisions.remove(buildNumber);
+                        } else {
+                            revisions.put(buildNumber, mapper.readValue(json, GXSInfo.class));
+                        }
+                    } catch (IOException | NumberFormatException ex) {
+                        // most likely a line left incomplete by a crash
+                        LOGGER.log(Level.WARNING, "Ignoring invalid line in " + file, ex);
+                    }
+                }
+            }
+        }
+
+        loaded = true;
+    }
+
+    private void append(String line) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(line);
+            writer.write('\n');
+        }
+        lineCount++;
+    }
+
+    /**
+     * Rewrites the ledger with only the indexed builds.
+     */
+    private void compact() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            for (Map.Entry<Integer, GXSInfo> entry : revisions.entrySet()) {
+                writer.write(toLine(entry.getKey(), entry.getValue(), mapper));
+                writer.write('\n');
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        lineCount = revisions.size();
+    }
+
+    private static String toLine(int buildNumber, GXSInfo info, ObjectMapper mapper) throws IOException {
+        return buildNumber + SEPARATOR + mapper.writeValueAsString(info);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(GXSRevisionIndex.class.getName());
+
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onDeleted(Run<?, ?> run) {
+            File[] files = run.getParent().getRootDir().listFiles((dir, name)
+                    -> name.startsWith(INDEX_FILE_PREFIX) && name.endsWith(INDEX_FILE_EXTENSION));
+            if (files == null) {
+                return;
+            }
+
+            for (File file : files) {
+                try {
+                    forFile(file).forget(run.getNumber());
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to update " + file, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the indexes of deleted, renamed or moved jobs from memory.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            evict(item.getRootDir());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            evictMissing();
+        }
+    }
+}
@@ -38,11 +38,15 @@ import hudson.Launcher;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
+import hudson.model.Computer;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.plugins.msbuild.MsBuildBuilder;
+import hudson.remoting.Channel;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
 import hudson.scm.ChangeLogParser;
 import hudson.scm.PollingResult;
 import hudson.scm.PollingResult.Change;
@@ -54,18 +58,31 @@ import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import jenkins.model.Jenkins;
@@ -74,7 +91,10 @@ import org.apache.commons.io.IOCase;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.genexus.GeneXusInstallation;
+import org.jenkinsci.plugins.genexus.helpers.CredentialsCache;
 import org.jenkinsci.plugins.genexus.helpers.MsBuildArgsHelper;
+import org.jenkinsci.plugins.genexus.metrics.Phase;
+import org.jenkinsci.plugins.genexus.metrics.PhaseTimer;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -98,6 +118,9 @@ public class GeneXusServerSCM extends SCM implements Serializable {
     // KB info
     private final String kbName;
     private final String kbVersion;
+    
+    // Other KB versions kept up to date along with kbVersion
+    private final String additionalKbVersions;
 
     // Local KB DB info
     private final String kbDbServerInstance;
@@ -105,6 +128,19 @@ public class GeneXusServerSCM extends SCM implements Serializable {
     private final String kbDbName;
     private boolean kbDbInSameFolder = true;
 
+    public GeneXusServerSCM(
+            String gxInstallationId,
+            String serverURL,
+            String credentialsId,
+            String kbName,
+            String kbVersion,
+            String kbDbServerInstance,
+            String kbDbCredentialsId,
+            String kbDbName,
+            boolean kbDbInSameFolder) {
+        this(gxInstallationId, serverURL, credentialsId, kbName, kbVersion, null, kbDbServerInstance, kbDbCredentialsId, kbDbName, kbDbInSameFolder);
+    }
+
     @DataBoundConstructor
     public GeneXusServerSCM(
             String gxInstallationId,
@@ -112,6 +148,7 @@ public class GeneXusServerSCM extends SCM implements Serializable {
             String credentialsId,
             String kbName,
             String kbVersion,
+            String additionalKbVersions,
             String kbDbServerInstance,
             String kbDbCredentialsId,
             String kbDbName,
@@ -124,6 +161,7 @@ public class GeneXusServerSCM extends SCM implements Serializable {
 
         this.kbName = kbName;
         this.kbVersion = kbVersion;
+        this.additionalKbVersions = additionalKbVersions;
 
         this.kbDbServerInstance = kbDbServerInstance;
         this.kbDbCredentialsId = kbDbCredentialsId;
@@ -178,6 +216,30 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         return kbVersion;
     }
 
+    @Exported
+    public String getAdditionalKbVersions() {
+        return additionalKbVersions;
+    }
+
+    /**
+     * @return the names of the other KB versions to keep up to date, without
+     * duplicates nor the main version
+     */
+    List<String> getAdditionalKbVersionList() {
+        Set<String> versions = new LinkedHashSet<>();
+        for (String version : StringUtils.split(Util.fixNull(additionalKbVersions), ",\n")) {
+            String trimmed = version.trim();
+            if (!trimmed.isEmpty() && !trimmed.equalsIgnoreCase(StringUtils.trimToEmpty(kbVersion))) {
+                versions.add(trimmed);
+            }
+        }
+        return new ArrayList<>(versions);
+    }
+
+    private GXSConnection getConnection(String version) {
+        return new GXSConnection(getServerURL(), getCredentialsId(), getKbName(), version);
+    }
+
     @Exported
     public String getKbDbServerInstance() {
         return kbDbServerInstance;
@@ -216,11 +278,101 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         if (workspace == null)
             workingPath = new FilePath(project.getRootDir());
         
-        GXSConnection gxs = new GXSConnection(getServerURL(), getCredentialsId(), getKbName(), getKbVersion());
-        GXSInfo currentInfo = workingPath.act(new GetLastRevisionTask(listener, getGxPath(), gxs, baseline.getRevisionDate(), new Date()));
+        final FilePath lookupPath = workingPath;
+        final Date now = new Date();
+
+        // the main version and every additional one are looked up concurrently
+        List<String> versions = getAdditionalKbVersionList();
+        List<GXSRevisionState> baselines = new ArrayList<>();
+        List<Callable<GXSInfo>> lookups = new ArrayList<>();
+        baselines.add(baseline);
+        lookups.add(() -> pollLastRevision(lookupPath, listener, getConnection(getKbVersion()), baseline.getRevisionDate(), now));
+        for (String version : versions) {
+            GXSRevisionState versionBaseline = getVersionBaseline(project, version);
+            baselines.add(versionBaseline);
+            lookups.add(() -> pollLastRevision(lookupPath, listener, getConnection(version), versionBaseline.getRevisionDate(), now));
+        }
+
+        List<GXSInfo> currentInfos = invokeAll(lookups);
+
+        GXSInfo currentInfo = currentInfos.get(0);
         GXSRevisionState currentState = new GXSRevisionState(currentInfo.revision, currentInfo.revisionDate);
 
-        return new PollingResult(baseline, currentState, currentState.getRevision() > baseline.getRevision() ? Change.SIGNIFICANT : Change.NONE);
+        Change change = Change.NONE;
+        for (int i = 0; i < currentInfos.size(); i++) {
+            if (currentInfos.get(i).revision > baselines.get(i).getRevision()) {
+                change = Change.SIGNIFICANT;
+            }
+        }
+
+        return new PollingResult(baseline, currentState, change);
+    }
+
+    private GXSInfo pollLastRevision(FilePath lookupPath, TaskListener listener, GXSConnection gxs, Date fromTimestamp, Date toTimestamp) throws IOException, InterruptedException {
+        try (PhaseTimer timer = PhaseTimer.start(Phase.POLLING, null, gxs.getServerURL(), gxs.getKbName())) {
+            GXSInfo info = GXSRevisionCache.getLastRevision(gxs, fromTimestamp, getDescriptor().getRevisionCacheTtlMillis(),
+                    () -> GXSPollingScheduler.withServerLimit(gxs.getServerURL(), getDescriptor().getMaxConcurrentHistoryCalls(),
+                            () -> lookupPath.act(new GetLastRevisionTask(listener, getGxPath(), gxs, fromTimestamp, toTimestamp, getDescriptor().getTeamDevOptions()))));
+            GXSPollingScheduler.recordRevision(gxs, info);
+            timer.succeeded();
+            return info;
+        }
+    }
+
+    /**
+     * @return the last known revision of one of the additional KB versions
+     */
+    @Nonnull
+    private static GXSRevisionState getVersionBaseline(Job<?, ?> project, String version) throws IOException {
+        Run<?, ?> lastBuild = project.getLastBuild();
+        if (lastBuild == null) {
+            return GXSRevisionState.MIN_REVISION;
+        }
+
+        GXSInfo info = GXSRevisionIndex.forJob(project, version).findClosest(lastBuild.getNumber());
+        return info != null ? new GXSRevisionState(info.revision, info.revisionDate) : GXSRevisionState.MIN_REVISION;
+    }
+
+    /**
+     * Runs a set of (mostly remote) calls concurrently and waits for all of
+     * them to finish.
+     *
+     * @return the results in the same order as the calls
+     */
+    private static <T> List<T> invokeAll(List<Callable<T>> calls) throws IOException, InterruptedException {
+        if (calls.size() == 1) {
+            try {
+                return Collections.singletonList(calls.get(0).call());
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : Computer.threadPoolForRemoting.invokeAll(calls)) {
+            results.add(getResult(future));
+        }
+        return results;
+    }
+
+    /**
+     * Waits for a call to finish, rethrowing whatever it threw.
+     */
+    private static <T> T getResult(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IOException(cause);
+        }
     }
 
     @Nonnull
@@ -256,8 +408,8 @@ public class GeneXusServerSCM extends SCM implements Serializable {
      * Reads the revision file of the specified build (or the closest, if the
      * flag is so specified.)
      *
-     * @param findClosest If true, this method will go back the build history
-     * until it finds a revision file. A build may not have a revision file for
+     * @param findClosest If true, this method will look for the closest
+     * previous build with a revision. A build may not have a revision file for
      * any number of reasons (such as failure, interruption, etc.)
      * @return a GXSRevisionState which includes a revision number and date
      */
@@ -265,10 +417,19 @@ public class GeneXusServerSCM extends SCM implements Serializable {
     static GXSRevisionState parseRevisionFile(Run<?, ?> build, boolean findClosest) throws IOException {
 
         if (findClosest) {
+            GXSRevisionIndex index = GXSRevisionIndex.forJob(build.getParent());
+            GXSInfo indexedInfo = index.findClosest(build.getNumber());
+            if (indexedInfo != null) {
+                return new GXSRevisionState(indexedInfo.revision, indexedInfo.revisionDate);
+            }
+
+            // Builds from before the index existed: go back the build history
+            // until we find a revision file, and index it for the next time.
             for (Run<?, ?> b = build; b != null; b = b.getPreviousBuild()) {
                 if (getRevisionFile(b).exists()) {
-                    build = b;
-                    break;
+                    GXSInfo info = loadRevisionFile(getRevisionFile(b));
+                    index.record(b.getNumber(), info);
+                    return new GXSRevisionState(info.revision, info.revisionDate);
                 }
             }
         }
@@ -307,21 +468,91 @@ public class GeneXusServerSCM extends SCM implements Serializable {
                 EnvVarsUtils.overrideAll(env, ((AbstractBuild) build).getBuildVariables());
             }
              */
-            Builder builder = createCheckoutOrUpdateAction(workspace);
+            boolean isCheckout = !kbAlreadyExists(workspace.child(getKbName()));
+            Builder builder = isCheckout ? createCheckoutAction(workspace) : createUpdateAction(workspace, getKbVersion());
 
-            // TODO: we should get the actual revision as an output from the checkout or update
-            // Meanwhile we resort to get the latest revision up to the current time
+            // The checkout/update doesn't tell which revision it got, so we
+            // take the last revision at the time it starts: the one found by
+            // the poll that started the build, if it's recent enough, or else
+            // one looked up while the checkout/update runs.
             Date updateTimeStamp = new Date();
-            if (!builder.perform((AbstractBuild) build, launcher, (BuildListener) listener))
-                throw new IOException("error executing checkout");
+            List<String> versions = getAdditionalKbVersionList();
+            GXSConnection gxs = getConnection(getKbVersion());
+            List<Callable<GXSInfo>> lookups = new ArrayList<>();
+            lookups.add(() -> getLastRevision(build, workspace, listener, gxs, updateTimeStamp));
+            for (String version : versions) {
+                GXSConnection versionGxs = getConnection(version);
+                lookups.add(() -> getLastRevision(build, workspace, listener, versionGxs, updateTimeStamp));
+            }
+            Future<List<GXSInfo>> pendingInfos = Computer.threadPoolForRemoting.submit(() -> invokeAll(lookups));
+
+            try {
+                try (PhaseTimer timer = PhaseTimer.start(isCheckout ? Phase.CHECKOUT : Phase.UPDATE, build, getServerURL(), getKbName())) {
+                    if (!builder.perform((AbstractBuild) build, launcher, (BuildListener) listener))
+                        throw new IOException("error executing checkout");
+                    timer.succeeded();
+                }
 
-            GXSConnection gxs = new GXSConnection(getServerURL(), getCredentialsId(), getKbName(), getKbVersion());
-            GXSInfo info = workspace.act(new GetLastRevisionTask(listener, getGxPath(), gxs, null, updateTimeStamp));
+                // A checkout already gets every version. Otherwise, additional
+                // versions are updated one at a time, as they share the same KB.
+                if (!isCheckout) {
+                    for (String version : versions) {
+                        try (PhaseTimer timer = PhaseTimer.start(Phase.UPDATE, build, getServerURL(), getKbName())) {
+                            if (!createUpdateAction(workspace, version).perform((AbstractBuild) build, launcher, (BuildListener) listener))
+                                throw new IOException("error updating version " + version);
+                            timer.succeeded();
+                        }
+                    }
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                pendingInfos.cancel(true);
+                throw e;
+            }
+
+            List<GXSInfo> infos = getResult(pendingInfos);
+
+            GXSInfo info = infos.get(0);
             saveRevisionFile(build, info);
 
+            for (int i = 0; i < versions.size(); i++) {
+                GXSRevisionIndex.forJob(build.getParent(), versions.get(i)).record(build.getNumber(), infos.get(i + 1));
+            }
+
             if (changelogFile != null) {
-                calcChangeLog(build, workspace, changelogFile, baseline, listener, gxs, info);
+                try (PhaseTimer timer = PhaseTimer.start(Phase.CHANGELOG, build, getServerURL(), getKbName())) {
+                    calcChangeLog(build, workspace, changelogFile, baseline, listener, gxs, info);
+                    timer.succeeded();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the last revision of a KB at a given date (the start of a
+     * checkout/update).
+     *
+     * A revision found by a lookup started less than the revision cache TTL
+     * before (usually the poll that started the build) is reused instead of
+     * asking GXserver again. Commits notified since then drop it from the
+     * cache. Otherwise a commit made between that lookup and the update is
+     * checked out but not recorded, so the next poll finds it and builds
+     * again: the recorded revision may be older than the one checked out,
+     * but never newer.
+     */
+    private GXSInfo getLastRevision(Run<?, ?> build, FilePath workspace, TaskListener listener, GXSConnection gxs, Date toTimestamp) throws IOException, InterruptedException {
+        try (PhaseTimer timer = PhaseTimer.start(Phase.LAST_REVISION, build, gxs.getServerURL(), gxs.getKbName())) {
+            AtomicBoolean lookedUp = new AtomicBoolean();
+            GXSInfo info = GXSRevisionCache.getLastRevision(gxs, null, getDescriptor().getRevisionCacheTtlMillis(), () -> {
+                lookedUp.set(true);
+                return GXSPollingScheduler.withServerLimit(gxs.getServerURL(), getDescriptor().getMaxConcurrentHistoryCalls(),
+                        () -> workspace.act(new GetLastRevisionTask(listener, getGxPath(), gxs, null, toTimestamp, getDescriptor().getTeamDevOptions())));
+            });
+            if (!lookedUp.get()) {
+                listener.getLogger().println("Revision " + info.revision + " of " + gxs + " was found by a recent lookup");
             }
+            GXSPollingScheduler.recordRevision(gxs, info);
+            timer.succeeded();
+            return info;
         }
     }
 
@@ -334,11 +565,56 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         
         boolean created = false;
         if (currentInfo.revisionDate.after(_baseline.getRevisionDate())) {
-            created = workspace.act(new CreateLogTask(listener, getGxPath(), gxs, changelogFile, _baseline.getRevisionDate(), currentInfo.revisionDate));
+            // Only the revisions not already known by the history store are
+            // requested to GXserver
+            GXSHistoryStore store = GXSHistoryStore.forConnection(gxs);
+            created = store.writeChangeLog(_baseline.getRevisionDate(), currentInfo.revisionDate,
+                    (from, to) -> fetchHistory(build, workspace, listener, gxs, from, to),
+                    changelogFile);
         }
         
         if (!created) {
             createEmptyChangeLog(changelogFile, listener, "log");
+        } else if (GXSCompactChangeLog.isEnabled()) {
+            // it's going to be read many more times than written
+            GXSCompactChangeLog.compact(changelogFile);
+        }
+    }
+
+    /**
+     * Gets the history of a period by running TeamDev on the workspace node.
+     *
+     * @return null if the history could not be obtained
+     */
+    private List<GXSChangeLogSet.LogEntry> fetchHistory(Run<?, ?> build, FilePath workspace, TaskListener listener, GXSConnection gxs, Date fromTimestamp, Date toTimestamp) throws IOException, InterruptedException {
+        // the node sends the history compressed, straight to the build folder
+        File historyFile = File.createTempFile("gxs-history", ".xml.gz", build.getRootDir());
+        try (PhaseTimer timer = PhaseTimer.start(Phase.HISTORY, build, gxs.getServerURL(), gxs.getKbName())) {
+            boolean created;
+            try (OutputStream historyStream = new FileOutputStream(historyFile)) {
+                RemoteOutputStream remoteStream = new RemoteOutputStream(historyStream);
+                created = GXSPollingScheduler.withServerLimit(gxs.getServerURL(), getDescriptor().getMaxConcurrentHistoryCalls(),
+                        () -> workspace.act(new CreateLogTask(listener, getGxPath(), gxs, remoteStream, fromTimestamp, toTimestamp, /* fromExcluding= */ true, getDescriptor().getTeamDevOptions())));
+
+                // written bytes may still be on their way from the node
+                VirtualChannel channel = workspace.getChannel();
+                if (channel instanceof Channel) {
+                    ((Channel) channel).syncLocalIO();
+                }
+            }
+
+            if (!created) {
+                return null;
+            }
+
+            List<GXSChangeLogSet.LogEntry> entries;
+            try (InputStream stream = new GZIPInputStream(new FileInputStream(historyFile))) {
+                entries = GXSChangeLogParser.parse(stream);
+            }
+            timer.succeeded();
+            return entries;
+        } finally {
+            Files.deleteIfExists(historyFile.toPath());
         }
     }
 
@@ -361,6 +637,7 @@ public class GeneXusServerSCM extends SCM implements Serializable {
     
     private static void saveRevisionFile(Run<?, ?> build, GXSInfo info) throws IOException {
         saveRevisionFile(getRevisionFile(build), info);
+        GXSRevisionIndex.forJob(build.getParent()).record(build.getNumber(), info);
     }
 
     private static void saveRevisionFile(File file, GXSInfo info) throws IOException {
@@ -373,15 +650,7 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         return mapper.readValue(file, GXSInfo.class);
     }
 
-    private Builder createCheckoutOrUpdateAction(FilePath workspace) {
-        if (!kbAlreadyExists(workspace.child(getKbName()))) {
-            return createCheckoutAction(workspace);
-        }
-
-        return createUpdateAction(workspace);
-    }
-
-    private MsBuildArgsHelper createBaseMsBuildArgs(FilePath workspace, String... targetNames) {
+    private MsBuildArgsHelper createBaseMsBuildArgs(FilePath workspace, String kbVersion, String... targetNames) {
         MsBuildArgsHelper msbArgs = new MsBuildArgsHelper(targetNames);
 
         msbArgs.addProperty("GX_PROGRAM_DIR", getGxPath());
@@ -393,8 +662,8 @@ public class GeneXusServerSCM extends SCM implements Serializable {
             msbArgs.addProperty("ServerPassword", upCredentials.getPassword().getPlainText());
         }
 
-        if (StringUtils.isNotBlank(getKbVersion())) {
-            msbArgs.addProperty("ServerKbVersion", getKbVersion());
+        if (StringUtils.isNotBlank(kbVersion)) {
+            msbArgs.addProperty("ServerKbVersion", kbVersion);
         }
 
         FilePath kbPath = workspace.child(getKbName());
@@ -403,19 +672,19 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         return msbArgs;
     }
 
-    private Builder createUpdateAction(FilePath workspace) {
-        MsBuildArgsHelper msbArgs = createBaseMsBuildArgs(workspace, "Update");
+    private Builder createUpdateAction(FilePath workspace, String kbVersion) {
+        MsBuildArgsHelper msbArgs = createBaseMsBuildArgs(workspace, kbVersion, "Update");
         return createMsBuildAction(msbArgs);
     }
 
     private Builder createCheckoutAction(FilePath workspace) {
-        MsBuildArgsHelper msbArgs = createBaseMsBuildArgs(workspace, "Checkout");
+        MsBuildArgsHelper msbArgs = createBaseMsBuildArgs(workspace, getKbVersion(), "Checkout");
 
         msbArgs.addProperty("ServerUrl", getServerURL());
         msbArgs.addProperty("ServerKbAlias", getKbName());
 
-        // TODO: Add support for including all versions on checkout
-        msbArgs.addProperty("GetAllKbVersions", false);
+        // additional versions come along with the checkout
+        msbArgs.addProperty("GetAllKbVersions", !getAdditionalKbVersionList().isEmpty());
 
         if (StringUtils.isNotBlank(getKbDbServerInstance())) {
             msbArgs.addProperty("DbaseServerInstance", getKbDbServerInstance());
@@ -473,17 +742,20 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         return new File(build.getRootDir(), "revision.txt");
     }
 
+    /**
+     * Gets the revision checked out by a build.
+     *
+     * @param build a build instance for which the revision is requested
+     * @return the revision, or null if the build checked out none
+     * @throws IOException if the revision file can't be read
+     */
+    public static GXSInfo getRevision(Run<?, ?> build) throws IOException {
+        File file = getRevisionFile(build);
+        return file.exists() ? loadRevisionFile(file) : null;
+    }
+
     private static StandardCredentials lookupCredentials(String credentialsId, String serverURL) {
-        return credentialsId == null ? null
-                : CredentialsMatchers.firstOrNull(
-                        CredentialsProvider.lookupCredentials(
-                                StandardCredentials.class,
-                                Jenkins.getInstance(),
-                                ACL.SYSTEM,
-                                URIRequirementBuilder.fromUri(serverURL).build()
-                        ),
-                        CredentialsMatchers.withId(credentialsId)
-                );
+        return CredentialsCache.lookup(credentialsId, serverURL);
     }
 
     @Override
@@ -509,6 +781,46 @@ public class GeneXusServerSCM extends SCM implements Serializable {
 
         public static final String DEFAULT_GENEXUS_PATH = "C:\\Program Files (x86)\\GeneXus\\GeneXus15";
         public static final String DEFAULT_SERVER_URL = "https://sandbox.genexusserver.com/v15";
+        public static final int DEFAULT_REVISION_CACHE_TTL = 60;
+        public static final int DEFAULT_MIN_POLLING_INTERVAL = 5;
+        public static final int DEFAULT_MAX_POLLING_INTERVAL = 240;
+        public static final int DEFAULT_TEAMDEV_TIMEOUT = 3600;
+
+        /**
+         * For how many seconds the last revision of a KB obtained while
+         * polling is shared with other jobs polling the same KB.
+         */
+        private int revisionCacheTtl = DEFAULT_REVISION_CACHE_TTL;
+
+        /**
+         * Max number of TeamDev processes run at the same time on each node.
+         * Zero lets every task start its own process right away.
+         */
+        private int teamDevMaxProcesses = 0;
+
+        /**
+         * Seconds after which a TeamDev process is killed. Zero means no limit.
+         */
+        private int teamDevTimeout = DEFAULT_TEAMDEV_TIMEOUT;
+
+        /**
+         * Whether jobs are polled by the plugin, at a pace that depends on
+         * the activity of their KBs.
+         */
+        private boolean adaptivePolling = false;
+
+        /**
+         * Min and max minutes between polls of a KB, when adaptive polling
+         * is enabled.
+         */
+        private int minPollingInterval = DEFAULT_MIN_POLLING_INTERVAL;
+        private int maxPollingInterval = DEFAULT_MAX_POLLING_INTERVAL;
+
+        /**
+         * Max number of history calls made to each GXserver at the same time.
+         * Zero means no limit.
+         */
+        private int maxConcurrentHistoryCalls = 0;
 
         @Override
         public boolean isApplicable(Job project) {
@@ -532,10 +844,119 @@ public class GeneXusServerSCM extends SCM implements Serializable {
 
         @Override
         public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
+            req.bindJSON(this, formData);
+            
             // Save configuration
             save();
             return super.configure(req, formData);
         }
+
+        public int getRevisionCacheTtl() {
+            return revisionCacheTtl;
+        }
+
+        public void setRevisionCacheTtl(int revisionCacheTtl) {
+            this.revisionCacheTtl = Math.max(0, revisionCacheTtl);
+        }
+
+        long getRevisionCacheTtlMillis() {
+            return revisionCacheTtl * 1000L;
+        }
+
+        public int getTeamDevMaxProcesses() {
+            return teamDevMaxProcesses;
+        }
+
+        public void setTeamDevMaxProcesses(int teamDevMaxProcesses) {
+            this.teamDevMaxProcesses = Math.max(0, teamDevMaxProcesses);
+        }
+
+        public int getTeamDevTimeout() {
+            return teamDevTimeout;
+        }
+
+        public void setTeamDevTimeout(int teamDevTimeout) {
+            this.teamDevTimeout = Math.max(0, teamDevTimeout);
+        }
+
+        public boolean isAdaptivePolling() {
+            return adaptivePolling;
+        }
+
+        public void setAdaptivePolling(boolean adaptivePolling) {
+            this.adaptivePolling = adaptivePolling;
+        }
+
+        public int getMinPollingInterval() {
+            return minPollingInterval;
+        }
+
+        public void setMinPollingInterval(int minPollingInterval) {
+            this.minPollingInterval = Math.max(1, minPollingInterval);
+        }
+
+        public int getMaxPollingInterval() {
+            return maxPollingInterval;
+        }
+
+        public void setMaxPollingInterval(int maxPollingInterval) {
+            this.maxPollingInterval = Math.max(1, maxPollingInterval);
+        }
+
+        public int getMaxConcurrentHistoryCalls() {
+            return maxConcurrentHistoryCalls;
+        }
+
+        public void setMaxConcurrentHistoryCalls(int maxConcurrentHistoryCalls) {
+            this.maxConcurrentHistoryCalls = Math.max(0, maxConcurrentHistoryCalls);
+        }
+
+        TeamDevWorker.Options getTeamDevOptions() {
+            return new TeamDevWorker.Options(teamDevMaxProcesses, teamDevTimeout * 1000L);
+        }
+
+        /**
+         * Validate the value for the revision cache TTL.
+         * 
+         * @param value number of seconds
+         * @return a FormValidation of a specific kind (OK, ERROR, WARNING)
+         */
+        public FormValidation doCheckRevisionCacheTtl(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckTeamDevMaxProcesses(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckTeamDevTimeout(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckMinPollingInterval(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckMaxPollingInterval(@QueryParameter String value, @QueryParameter String minPollingInterval) {
+            FormValidation validation = FormValidation.validatePositiveInteger(value);
+            if (validation.kind != FormValidation.Kind.OK) {
+                return validation;
+            }
+
+            try {
+                if (Integer.parseInt(value) < Integer.parseInt(minPollingInterval)) {
+                    return FormValidation.warning("Shorter than the min interval, which will be used instead");
+                }
+            } catch (NumberFormatException ex) {
+                // the min interval is validated on its own
+            }
+
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckMaxConcurrentHistoryCalls(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
         
         public ListBoxModel doFillGxInstallationIdItems() {
             ListBoxModel items = new ListBoxModel();
@@ -658,14 +1079,7 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         }
 
         private static StandardCredentials lookupCredentials(Item context, String credentialsId, String serverURL) {
-            return credentialsId == null ? null
-                    : CredentialsMatchers.firstOrNull(CredentialsProvider.lookupCredentials(StandardCredentials.class,
-                            context,
-                            ACL.SYSTEM,
-                            URIRequirementBuilder.fromUri(serverURL).build()
-                    ),
-                            CredentialsMatchers.withId(credentialsId)
-                    );
+            return CredentialsCache.lookup(context, credentialsId, serverURL);
         }
 
         /**
@@ -716,11 +1130,7 @@ public class GeneXusServerSCM extends SCM implements Serializable {
         }
 
         private static StandardCredentials lookupKbDbCredentials(Item context, String kbDbCredentialsId, String kbDbServerInstance) {
-            return kbDbCredentialsId == null ? null
-                    : CredentialsMatchers.firstOrNull(CredentialsProvider
-                            .lookupCredentials(StandardCredentials.class, context, ACL.SYSTEM,
-                                    URIRequirementBuilder.fromUri(kbDbServerInstance).build()),
-                            CredentialsMatchers.withId(kbDbCredentialsId));
+            return CredentialsCache.lookup(context, kbDbCredentialsId, kbDbServerInstance);
         }
     }
 }
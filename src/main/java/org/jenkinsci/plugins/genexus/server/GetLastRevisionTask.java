@@ -27,9 +27,14 @@ import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
-import java.util.List;
 import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.jenkinsci.plugins.genexus.helpers.TeamDevArgumentListBuilder;
+import org.jenkinsci.plugins.genexus.helpers.TeamDevCredentials;
 
 /**
  *
@@ -44,45 +49,96 @@ public class GetLastRevisionTask extends MasterToSlaveFileCallable<GXSInfo> {
     private final GXSConnection gxsConnection;
     private final Date fromTimestamp;
     private final Date toTimestamp;
+    private final TeamDevWorker.Options teamDevOptions;
+    private final TeamDevCredentials credentials;
 
     public GetLastRevisionTask(TaskListener listener, String gxPath, GXSConnection gxsConnection) {
         this(listener, gxPath, gxsConnection, null, null);
     }
 
     public GetLastRevisionTask(TaskListener listener, String gxPath, GXSConnection gxsConnection, Date fromTimestamp, Date toTimestamp) {
+        this(listener, gxPath, gxsConnection, fromTimestamp, toTimestamp, TeamDevWorker.Options.DEFAULT);
+    }
+
+    GetLastRevisionTask(TaskListener listener, String gxPath, GXSConnection gxsConnection, Date fromTimestamp, Date toTimestamp, TeamDevWorker.Options teamDevOptions) {
         this.gxPath = gxPath;
         this.listener = listener;
         this.gxsConnection = gxsConnection;
         this.fromTimestamp = DateUtils.cloneIfNotNull(fromTimestamp);
         this.toTimestamp = DateUtils.cloneIfNotNull(toTimestamp);
+        this.teamDevOptions = teamDevOptions;
+
+        // looked up here, as tasks are created on the master
+        this.credentials = TeamDevCredentials.forConnection(gxsConnection);
     }
 
     /**
-     * @return null if the parsing somehow fails. Otherwise a GXserver revision
-     * info.
+     * Reads the TeamDev history output as it arrives and stops the process as
+     * soon as the first (most recent) revision has been read, so the cost of
+     * the lookup does not depend on how long the history window is.
+     *
+     * @return GXserver revision info. Revision 0 if there were no revisions in
+     * the requested period.
      */
     @Override
     public GXSInfo invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
         
-        File logFile = new File(ws, "scm-polling.txt");
-        
         // we avoid excluding the fromTimestamp so that we get at least the
         // last known revision
-        CreateLogTask createLogTask = new CreateLogTask(listener, gxPath, gxsConnection, logFile, fromTimestamp, toTimestamp, /* fromExcluding= */ false);
-        if (!createLogTask.invoke(ws, channel)) {
-            throw new IOException("Error checking for last revision");
+        TeamDevArgumentListBuilder args = new TeamDevArgumentListBuilder(gxPath, gxsConnection, credentials, fromTimestamp, toTimestamp, /* fromExcluding= */ false);
+
+        listener.getLogger().println("Checking GeneXus Server last revision");
+        listener.getLogger().println(args.toString());
+
+        ProcessBuilder procBuilder = new ProcessBuilder(args.toCommandArray());
+        procBuilder.redirectErrorStream(true);
+
+        GXSChangeLogSet.LogEntry lastRevision;
+        try {
+            lastRevision = TeamDevWorker.run(procBuilder, teamDevOptions, (proc) -> {
+                // only the end of the output is kept, to report errors
+                TailBuffer tail = new TailBuffer();
+                try (InputStream output = new TeeInputStream(proc.getInputStream(), tail)) {
+                    // We are assuming revisions always come in descending order, so we
+                    // just take the first revision as the most recent one.
+                    GXSChangeLogSet.LogEntry first;
+                    try {
+                        first = GXSChangeLogParser.parseFirst(output);
+                    } catch (IOException e) {
+                        // not a history, most likely an error message
+                        IOUtils.copy(output, NullOutputStream.NULL_OUTPUT_STREAM);
+                        printOutput(tail);
+                        throw e;
+                    }
+
+                    if (first == null) {
+                        int exitCode = proc.waitFor();
+                        if (exitCode != 0) {
+                            printOutput(tail);
+                            throw new IOException("TeamDev exited with code " + exitCode);
+                        }
+                    }
+
+                    // the worker ends the process if it's still running
+                    return first;
+                }
+            });
+        } catch (IOException e) {
+            listener.getLogger().println("Error checking history: " + e.getMessage());
+            throw new IOException("Error checking for last revision", e);
         }
-        
-        List<GXSChangeLogSet.LogEntry> logEntries = GXSChangeLogParser.parse(logFile);
-        if (logEntries.isEmpty())
+
+        if (lastRevision == null)
             return new GXSInfo(gxsConnection, 0, new Date(0));
         
-        // We are assuming revisions always come in descending order, so we
-        // just take the first revision as the most recent one.
-        GXSChangeLogSet.LogEntry lastRevision = logEntries.get(0);
         GXSInfo gxsInfo = new GXSInfo(gxsConnection, lastRevision.getRevision(), new Date(lastRevision.getTimestamp()));
         return gxsInfo;
     }
     
+    private void printOutput(TailBuffer tail) {
+        listener.getLogger().println("TeamDev output:");
+        listener.getLogger().println(tail.toString());
+    }
+
     private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ *
+ * @author jlr
+ *
+ * Keeps the last bytes written to it, so that the end of a process output can
+ * be reported on errors without storing the whole output anywhere.
+ */
+final class TailBuffer extends OutputStream {
+
+    /**
+     * Default capacity, enough for TeamDev error messages.
+     */
+    static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    private final byte[] buffer;
+    private long written = 0;
+
+    TailBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    TailBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        buffer[(int) (written % buffer.length)] = (byte) b;
+        written++;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        // only the last bytes would be kept anyway
+        if (len > buffer.length) {
+            written += len - buffer.length;
+            off += len - buffer.length;
+            len = buffer.length;
+        }
+
+        int start = (int) (written % buffer.length);
+        int firstPart = Math.min(len, buffer.length - start);
+        System.arraycopy(b, off, buffer, start, firstPart);
+        System.arraycopy(b, off + firstPart, buffer, 0, len - firstPart);
+        written += len;
+    }
+
+    /**
+     * @return the kept bytes, preceded by a note when earlier bytes were
+     * dropped
+     */
+    synchronized String toString(Charset charset) {
+        if (written <= buffer.length) {
+            return new String(buffer, 0, (int) written, charset);
+        }
+
+        int start = (int) (written % buffer.length);
+        byte[] tail = new byte[buffer.length];
+        System.arraycopy(buffer, start, tail, 0, buffer.length - start);
+        System.arraycopy(buffer, 0, tail, buffer.length - start, start);
+        return "(" + (written - buffer.length) + " bytes omitted)\n" + new String(tail, charset);
+    }
+
+    @Override
+    public String toString() {
+        return toString(Charset.defaultCharset());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @author jlr
+ *
+ * Runs the TeamDev processes requested by the tasks executing on a node.
+ *
+ * TeamDev has no server mode, so every request still needs a process of its
+ * own. When enabled, the worker keeps a long-lived queue on each node so that
+ * no more than a given number of TeamDev processes run at the same time on
+ * it. In any mode, processes that don't finish in time (an hour, unless
+ * configured otherwise) are killed so that a hung TeamDev doesn't block
+ * polling for good. A zero timeout disables this.
+ */
+final class TeamDevWorker {
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("TeamDev watchdog"));
+
+    private static TeamDevWorker instance;
+
+    private final int maxProcesses;
+    private final ThreadPoolExecutor executor;
+
+    private TeamDevWorker(int maxProcesses) {
+        this.maxProcesses = maxProcesses;
+        this.executor = new ThreadPoolExecutor(maxProcesses, maxProcesses,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                daemonThreadFactory("TeamDev worker"));
+
+        // idle workers go away, so the worker takes no resources on nodes
+        // that are not being used for polling
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static synchronized TeamDevWorker get(int maxProcesses) {
+        if (instance == null || instance.maxProcesses != maxProcesses) {
+            if (instance != null) {
+                // already queued requests are still served
+                instance.executor.shutdown();
+            }
+            instance = new TeamDevWorker(maxProcesses);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Starts a TeamDev process and lets the handler deal with it.
+     *
+     * @param procBuilder process to start
+     * @param options how the process is to be run
+     * @param handler reads the process output, waits for it, etc.
+     * @return whatever the handler returns
+     */
+    static <T> T run(ProcessBuilder procBuilder, Options options, ProcessHandler<T> handler) throws IOException, InterruptedException {
+        checkExecutable(procBuilder.command());
+
+        if (options.maxProcesses <= 0) {
+            return start(procBuilder, options, handler);
+        }
+
+        Future<T> future = get(options.maxProcesses).executor.submit(() -> start(procBuilder, options, handler));
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IOException("Error running TeamDev", cause);
+        }
+    }
+
+    private static <T> T start(ProcessBuilder procBuilder, Options options, ProcessHandler<T> handler) throws IOException, InterruptedException {
+        Process proc = procBuilder.start();
+
+        ScheduledFuture<?> watchdog = null;
+        if (options.timeoutMillis > 0) {
+            watchdog = WATCHDOG.schedule(() -> {
+                if (proc.isAlive()) {
+                    LOGGER.log(Level.WARNING, "Killing TeamDev process after {0} ms", options.timeoutMillis);
+                    proc.destroyForcibly();
+                }
+            }, options.timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            return handler.handle(proc);
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            if (proc.isAlive()) {
+                proc.destroy();
+            }
+        }
+    }
+
+    /**
+     * Fails fast (without taking a place in the queue) when TeamDev cannot
+     * be found on the node.
+     */
+    private static void checkExecutable(List<String> command) throws IOException {
+        if (command.isEmpty()) {
+            throw new IOException("No TeamDev command to run");
+        }
+
+        File executable = new File(command.get(0));
+        if (executable.isAbsolute() && !executable.isFile()) {
+            throw new IOException("Cannot find TeamDev at " + executable);
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return (runnable) -> {
+            Thread thread = new Thread(runnable, name + " #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Deals with a started TeamDev process.
+     */
+    @FunctionalInterface
+    interface ProcessHandler<T> {
+
+        T handle(Process proc) throws IOException, InterruptedException;
+    }
+
+    /**
+     * How TeamDev processes are run. Set up on the master and sent to the
+     * nodes along with each task.
+     */
+    static final class Options implements Serializable {
+
+        static final Options DEFAULT = new Options(0, TimeUnit.SECONDS.toMillis(GeneXusServerSCM.DescriptorImpl.DEFAULT_TEAMDEV_TIMEOUT));
+
+        private final int maxProcesses;
+        private final long timeoutMillis;
+
+        /**
+         * @param maxProcesses max number of TeamDev processes on each node.
+         * Zero or less runs every process as soon as it's requested.
+         * @param timeoutMillis time after which a TeamDev process is killed.
+         * Zero or less waits forever.
+         */
+        Options(int maxProcesses, long timeoutMillis) {
+            this.maxProcesses = maxProcesses;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(TeamDevWorker.class.getName());
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.builders;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.genexus.GeneXusInstallation;
+import org.jenkinsci.plugins.genexus.server.GeneXusServerSCM;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author jlr
+ */
+public class GeneXusBuilderTest {
+
+    private static final String KB_FOLDER = "KB";
+    private static final String KB_VERSION = "Trunk";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException {
+        File gxHome = tmp.newFolder("GeneXus");
+        new File(gxHome, "TeamDev.msbuild").createNewFile();
+        j.jenkins.getDescriptorByType(GeneXusInstallation.DescriptorImpl.class)
+                .setInstallations(new GeneXusInstallation("gx", gxHome.getPath(), null));
+        CountingBuilder.RUNS.set(0);
+    }
+
+    @Test
+    public void skipsRevisionAlreadyBuilt() throws Exception {
+        FreeStyleProject project = createProject(true);
+
+        j.buildAndAssertSuccess(project);
+        assertEquals(1, CountingBuilder.RUNS.get());
+
+        FreeStyleBuild second = j.buildAndAssertSuccess(project);
+        assertEquals(1, CountingBuilder.RUNS.get());
+        j.assertLogContains("Revision 5 is already built for environment Web, skipping it", second);
+
+        // the record is kept in the KB folder itself, not in "${WORKSPACE}/KB"
+        FilePath record = project.getSomeWorkspace().child(KB_FOLDER).child(".jenkins-build-cache").child("Web.key");
+        assertTrue(record.exists());
+    }
+
+    @Test
+    public void alwaysBuildsWhenSkippingIsDisabled() throws Exception {
+        FreeStyleProject project = createProject(false);
+
+        j.buildAndAssertSuccess(project);
+        j.buildAndAssertSuccess(project);
+        assertEquals(2, CountingBuilder.RUNS.get());
+        assertFalse(project.getSomeWorkspace().child(KB_FOLDER).child(".jenkins-build-cache").exists());
+    }
+
+    @Test
+    public void buildsSeveralEnvironmentsAtTheSameTime() throws Exception {
+        FreeStyleProject project = createProject(new CountingBuilder("Web,Java", false, 2));
+
+        FreeStyleBuild build = j.buildAndAssertSuccess(project);
+        assertEquals(2, CountingBuilder.RUNS.get());
+        j.assertLogContains("Building environments Web, Java (2 at a time)", build);
+        j.assertLogContains("---- environment Web built successfully ----", build);
+        j.assertLogContains("---- environment Java built successfully ----", build);
+    }
+
+    private FreeStyleProject createProject(boolean skipIfUnchanged) throws IOException {
+        return createProject(new CountingBuilder("Web", skipIfUnchanged, 1));
+    }
+
+    private FreeStyleProject createProject(CountingBuilder builder) throws IOException {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getBuildersList().add(new RevisionWriter(5));
+        project.getBuildersList().add(builder);
+        return project;
+    }
+
+    /**
+     * Records a revision for the build, as a GeneXus Server checkout does.
+     */
+    private static final class RevisionWriter extends TestBuilder {
+
+        private final long revision;
+
+        RevisionWriter(long revision) {
+            this.revision = revision;
+        }
+
+        @Override
+        public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws IOException {
+            String info = "{\"serverUrl\":\"https://gxserver.example.com/v15\",\"kbName\":\"KB\",\"kbVersion\":\"" + KB_VERSION + "\","
+                    + "\"revision\":" + revision + ",\"revisionDate\":\"03/01/2018 10:20:30\"}";
+            Files.write(GeneXusServerSCM.getRevisionFile(build).toPath(), info.getBytes(StandardCharsets.UTF_8));
+            build.getWorkspace().child(KB_FOLDER).mkdirs();
+            return true;
+        }
+    }
+
+    /**
+     * Counts MSBuild runs instead of running MSBuild.
+     */
+    public static final class CountingBuilder extends GeneXusBuilder {
+
+        static final AtomicInteger RUNS = new AtomicInteger();
+
+        CountingBuilder(String kbEnvironment, boolean skipIfUnchanged, int maxParallelBuilds) {
+            super("gx", "${WORKSPACE}/" + KB_FOLDER, KB_VERSION, kbEnvironment, false, skipIfUnchanged, maxParallelBuilds);
+        }
+
+        @Override
+        boolean runMsBuild(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, GeneXusInstallation installation, String msBuildFile, String environment) {
+            RUNS.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public DescriptorImpl getDescriptor() {
+            return Jenkins.getInstance().getDescriptorByType(DescriptorImpl.class);
+        }
+    }
+}
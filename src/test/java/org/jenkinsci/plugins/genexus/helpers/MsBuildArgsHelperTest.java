@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.helpers;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ *
+ * @author jlr
+ */
+public class MsBuildArgsHelperTest {
+
+    @Test
+    public void writesArgumentsInTheOrderTheyWereAdded() {
+        MsBuildArgsHelper args = new MsBuildArgsHelper("Build");
+        args.addNoLogo();
+        args.addProperty("A", "x y");
+        args.addProperty("B", 2);
+
+        assertEquals("/nologo /t:Build /p:A=\"x y\";B=2", args.toString());
+        assertEquals(args.toString(), args.toString());
+    }
+
+    @Test
+    public void normalizedStringDoesNotDependOnOrder() {
+        MsBuildArgsHelper args = new MsBuildArgsHelper("Build");
+        args.addNoLogo();
+        args.addParameter("/m");
+        args.addProperty("A", "x y");
+        args.addProperty("B", 2);
+        args.addParameterValue("/v:", "minimal");
+        args.addParameterValue("/fl", "");
+
+        MsBuildArgsHelper reordered = new MsBuildArgsHelper();
+        reordered.addParameterValue("/fl", "");
+        reordered.addProperty("B", 2);
+        reordered.addParameter("/m");
+        reordered.addParameterValue("/v:", "minimal");
+        reordered.addProperty("A", "x y");
+        reordered.addTarget("Build");
+        reordered.addNoLogo();
+
+        assertEquals("/m /nologo /fl /v:minimal /p:A=\"x y\";B=2 /t:Build", args.toNormalizedString());
+        assertEquals(args.toNormalizedString(), reordered.toNormalizedString());
+    }
+
+    @Test
+    public void normalizedStringKeepsTargetsOrder() {
+        MsBuildArgsHelper args = new MsBuildArgsHelper("Clean", "Build");
+        MsBuildArgsHelper reversed = new MsBuildArgsHelper("Build", "Clean");
+
+        assertNotEquals(args.toNormalizedString(), reversed.toNormalizedString());
+    }
+}
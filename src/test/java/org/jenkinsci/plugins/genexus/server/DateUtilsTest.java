@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.util.Date;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ * @author jlr
+ */
+public class DateUtilsTest {
+
+    private static final String DATE = "03/01/2018 10:20:30";
+
+    @Test
+    public void parsesTeamDevDates() {
+        assertEquals(DATE, DateUtils.toUTCstring(DateUtils.fromUTCstring(DATE)));
+        assertEquals("03/01/2018 09:05:07", DateUtils.toUTCstring(DateUtils.fromUTCstring("3/1/2018 9:5:7")));
+    }
+
+    @Test
+    public void ignoresTrailingText() {
+        assertEquals(DATE, DateUtils.toUTCstring(DateUtils.fromUTCstring(DATE + ".123")));
+        assertEquals(DATE, DateUtils.toUTCstring(DateUtils.fromUTCstring(DATE + " +0000")));
+        assertEquals(DATE, DateUtils.toUTCstring(DateUtils.fromUTCstring(" " + DATE + " PM\n")));
+    }
+
+    @Test
+    public void givesEpochForInvalidDates() {
+        assertEquals(new Date(0), DateUtils.fromUTCstring("2018-03-01T10:20:30Z"));
+        assertEquals(new Date(0), DateUtils.fromUTCstring("03/01/2018"));
+        assertEquals(new Date(0), DateUtils.fromUTCstring(""));
+        assertEquals(new Date(0), DateUtils.fromUTCstring(null));
+    }
+}
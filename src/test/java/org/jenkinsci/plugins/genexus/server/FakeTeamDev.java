@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * @author jlr
+ *
+ * Runs the fake TeamDev scripts shipped with the tests (fake-teamdev.sh, or
+ * fake-teamdev.cmd on Windows). See the scripts for the environment
+ * variables that set what they do.
+ */
+final class FakeTeamDev {
+
+    static final String OUTPUT = "FAKE_TEAMDEV_OUTPUT";
+    static final String SLEEP = "FAKE_TEAMDEV_SLEEP";
+    static final String EXIT = "FAKE_TEAMDEV_EXIT";
+
+    private FakeTeamDev() {
+    }
+
+    /**
+     * @return a process builder for the fake TeamDev, run through the shell
+     * so that the script needs no execute permission
+     */
+    static ProcessBuilder command(String... args) {
+        List<String> command = new ArrayList<>();
+        if (isWindows()) {
+            command.add("cmd");
+            command.add("/c");
+            command.add(getScript("fake-teamdev.cmd").getPath());
+        } else {
+            command.add("sh");
+            command.add(getScript("fake-teamdev.sh").getPath());
+        }
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command);
+    }
+
+    private static File getScript(String name) {
+        URL url = FakeTeamDev.class.getResource(name);
+        if (url == null) {
+            throw new IllegalStateException("Missing test resource " + name);
+        }
+
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static boolean isWindows() {
+        return File.pathSeparatorChar == ';';
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.Action;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ * @author jlr
+ */
+public class GXSChangeLogParserTest {
+
+    private static final String FIRST_ENTRY
+            = "<logentry revision=\"12\">"
+            + "<author>jlr</author>"
+            + "<date>03/01/2018 10:20:30</date>"
+            + "<msg>Fix transaction</msg>"
+            + "<actions>"
+            + "<action type=\"Modified\">"
+            + "<objectName>Customer</objectName>"
+            + "<objectType>Transaction</objectType>"
+            + "</action>"
+            + "</actions>"
+            + "</logentry>";
+
+    private static final String SECOND_ENTRY
+            = "<logentry revision=\"11\">"
+            + "<author>someone</author>"
+            + "<date>03/01/2018 09:00:00</date>"
+            + "<msg>Add procedure</msg>"
+            + "</logentry>";
+
+    @Test
+    public void returnsFirstEntry() throws IOException {
+        LogEntry first = GXSChangeLogParser.parseFirst(stream("<log>" + FIRST_ENTRY + SECOND_ENTRY + "</log>"));
+
+        assertEquals(12, first.getRevision());
+        assertEquals("jlr", first.getUserName());
+        assertEquals("Fix transaction", first.getMsg());
+        assertEquals("03/01/2018 10:20:30", DateUtils.toUTCstring(first.getDate()));
+        assertEquals(1, first.getActions().size());
+
+        Action action = first.getActions().get(0);
+        assertEquals("Modified", action.getType());
+        assertEquals("Customer", action.getObjectName());
+        assertEquals("Transaction", action.getObjectType());
+    }
+
+    @Test
+    public void returnsNullForEmptyLog() throws IOException {
+        assertNull(GXSChangeLogParser.parseFirst(stream("<log></log>")));
+    }
+
+    @Test
+    public void stopsReadingAfterFirstEntry() throws IOException {
+        LogEntry first = GXSChangeLogParser.parseFirst(stream("<log>" + FIRST_ENTRY + "<logentry revision=\"11\"><msg>"));
+
+        assertEquals(12, first.getRevision());
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8));
+    }
+}
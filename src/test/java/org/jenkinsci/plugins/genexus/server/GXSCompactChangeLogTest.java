@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.Action;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author jlr
+ */
+public class GXSCompactChangeLogTest {
+
+    /**
+     * More entries than read in a single batch when iterating.
+     */
+    private static final int ENTRIES = 200;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<LogEntry> logs = new ArrayList<>();
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        // revision N has N % 5 actions, and no message when N is even
+        for (int revision = ENTRIES; revision > 0; revision--) {
+            LogEntry log = new LogEntry();
+            log.setRevision(revision);
+            log.setUser("user" + (revision % 3));
+            log.setMsg(revision % 2 == 0 ? null : "Message ñ " + revision);
+            log.setDate(new Date(revision * 1000L));
+            for (int i = 0; i < revision % 5; i++) {
+                log.addAction(action(revision, i));
+            }
+            logs.add(log);
+        }
+
+        file = tmp.newFile("changelog.xml");
+        GXSCompactChangeLog.write(logs, file);
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        assertTrue(GXSCompactChangeLog.isCompact(file));
+
+        List<LogEntry> read = GXSCompactChangeLog.read(file);
+        assertEquals(logs.size(), read.size());
+        for (int i = 0; i < logs.size(); i++) {
+            assertSameEntry(logs.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    public void readsEntriesOnDemand() throws IOException {
+        GXSCompactChangeLog.IndexedLog log = GXSCompactChangeLog.open(file);
+        assertEquals(ENTRIES, log.size());
+        assertEquals(ENTRIES - 150, log.getRevision(150));
+
+        try (Closeable open = log.keepOpen()) {
+            assertSameEntry(logs.get(150), log.get(150));
+            assertSameEntry(logs.get(3), log.get(3));
+        }
+    }
+
+    @Test
+    public void keepsNullValues() throws IOException {
+        LogEntry log = new LogEntry();
+        log.setRevision(1);
+        log.addAction(new Action());
+        GXSCompactChangeLog.write(Collections.singletonList(log), file);
+
+        LogEntry read = GXSCompactChangeLog.open(file).get(0);
+        assertNull(read.getUserName());
+        assertNull(read.getMsg());
+        assertNull(read.getDate());
+
+        Action action = read.getActions().get(0);
+        assertNull(action.getType());
+        assertNull(action.getObjectName());
+    }
+
+    @Test
+    public void countsActionsWithoutReadingThem() throws IOException {
+        long expected = 0;
+        for (LogEntry log : logs) {
+            expected += log.getActions().size();
+        }
+
+        GXSCompactChangeLog.IndexedLog log = GXSCompactChangeLog.open(file);
+        assertEquals(expected, log.getTotalActionsCount());
+        assertEquals(4, log.get(ENTRIES - 4).getActionsCount());
+    }
+
+    @Test
+    public void readsOnlyFirstActions() throws IOException {
+        LogEntry read = GXSCompactChangeLog.open(file).get(ENTRIES - 4);
+
+        List<Action> first = read.getActions(2);
+        assertEquals(2, first.size());
+        assertEquals("Object4_0", first.get(0).getObjectName());
+        assertEquals("Object4_1", first.get(1).getObjectName());
+
+        assertEquals(4, read.getActions().size());
+        assertEquals(3, read.getActions(3).size());
+    }
+
+    private static Action action(int revision, int index) {
+        Action action = new Action();
+        action.setType("Modified");
+        action.setObjectGuid("guid-" + revision + "-" + index);
+        action.setObjectType("Procedure");
+        action.setObjectTypeGuid("84a12160-f59b-4ad7-a683-ea4481ac23e9");
+        action.setObjectName("Object" + revision + "_" + index);
+        action.setObjectDescription("Object " + index + " of revision " + revision);
+        return action;
+    }
+
+    private static void assertSameEntry(LogEntry expected, LogEntry actual) {
+        assertEquals(expected.getRevision(), actual.getRevision());
+        assertEquals(expected.getUserName(), actual.getUserName());
+        assertEquals(expected.getMsg(), actual.getMsg());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getActions().size(), actual.getActions().size());
+        for (int i = 0; i < expected.getActions().size(); i++) {
+            Action expectedAction = expected.getActions().get(i);
+            Action actualAction = actual.getActions().get(i);
+            assertEquals(expectedAction.getType(), actualAction.getType());
+            assertEquals(expectedAction.getObjectGuid(), actualAction.getObjectGuid());
+            assertEquals(expectedAction.getObjectType(), actualAction.getObjectType());
+            assertEquals(expectedAction.getObjectTypeGuid(), actualAction.getObjectTypeGuid());
+            assertEquals(expectedAction.getObjectName(), actualAction.getObjectName());
+            assertEquals(expectedAction.getObjectDescription(), actualAction.getObjectDescription());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.jenkinsci.plugins.genexus.server.GXSChangeLogSet.LogEntry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author jlr
+ */
+public class GXSHistoryStoreTest {
+
+    private static final long MINUTE = 60000L;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private GXSHistoryStore store;
+    private File changelogFile;
+
+    /**
+     * Periods requested to the fake GXserver, as "from-to" in minutes.
+     */
+    private final List<String> fetched = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        store = new GXSHistoryStore(tmp.newFolder("store"));
+        changelogFile = new File(tmp.getRoot(), "changelog.xml");
+    }
+
+    @Test
+    public void fetchesOnlyWhatIsNotCovered() throws Exception {
+        assertEquals(revisions(10, 1), write(0, 10));
+        assertEquals(revisions(10, 1), write(0, 10));
+        assertEquals(revisions(15, 6), write(5, 15));
+        assertEquals(fetched("0-10", "10-15"), fetched);
+    }
+
+    @Test
+    public void extendsCoverageBackwards() throws Exception {
+        write(10, 20);
+        assertEquals(revisions(12, 6), write(5, 12));
+        assertEquals(revisions(20, 1), write(0, 20));
+        assertEquals(fetched("10-20", "5-12", "0-20"), fetched);
+
+        // everything since minute 0 is now known
+        assertEquals(revisions(20, 3), write(2, 20));
+        assertEquals(fetched("10-20", "5-12", "0-20"), fetched);
+    }
+
+    @Test
+    public void keepsCoverageWhenFetchedPeriodIsNotContiguous() throws Exception {
+        write(10, 20);
+        assertEquals(revisions(5, 1), write(0, 5));
+        assertEquals(revisions(5, 1), write(0, 5));
+        assertEquals(fetched("10-20", "0-5", "0-5"), fetched);
+
+        // what was covered still is
+        assertEquals(revisions(20, 11), write(10, 20));
+        assertEquals(3, fetched.size());
+    }
+
+    @Test
+    public void failsWhenHistoryCannotBeFetched() throws Exception {
+        assertFalse(store.writeChangeLog(minutes(0), minutes(10), (from, to) -> null, changelogFile));
+
+        // nothing is covered after a failure
+        write(0, 10);
+        assertEquals(fetched("0-10"), fetched);
+    }
+
+    @Test
+    public void keepsHistoryAcrossInstances() throws Exception {
+        write(0, 10);
+
+        store = new GXSHistoryStore(new File(tmp.getRoot(), "store"));
+        assertEquals(revisions(10, 4), write(3, 10));
+        assertEquals(fetched("0-10"), fetched);
+    }
+
+    /**
+     * Writes the changelog of a period, given in minutes.
+     *
+     * @return the revisions in the changelog
+     */
+    private List<Integer> write(int fromMinute, int toMinute) throws Exception {
+        assertTrue(store.writeChangeLog(minutes(fromMinute), minutes(toMinute), this::fetch, changelogFile));
+
+        List<Integer> revisions = new ArrayList<>();
+        for (LogEntry entry : GXSChangeLogParser.parse(changelogFile)) {
+            revisions.add(entry.getRevision());
+        }
+        return revisions;
+    }
+
+    /**
+     * A GXserver where revision N was committed at minute N.
+     */
+    private List<LogEntry> fetch(Date from, Date to) {
+        int fromMinute = (int) (from.getTime() / MINUTE);
+        int toMinute = (int) (to.getTime() / MINUTE);
+        fetched.add(fromMinute + "-" + toMinute);
+
+        List<LogEntry> entries = new ArrayList<>();
+        for (int revision = toMinute; revision > fromMinute; revision--) {
+            LogEntry entry = new LogEntry();
+            entry.setRevision(revision);
+            entry.setUser("user");
+            entry.setDate(minutes(revision));
+            entry.setMsg("Revision " + revision);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static Date minutes(int minutes) {
+        return new Date(minutes * MINUTE);
+    }
+
+    /**
+     * @return the revisions from one to another, recent ones first
+     */
+    private static List<Integer> revisions(int from, int to) {
+        List<Integer> revisions = new ArrayList<>();
+        for (int revision = from; revision >= to; revision--) {
+            revisions.add(revision);
+        }
+        return revisions;
+    }
+
+    private static List<String> fetched(String... periods) {
+        List<String> list = new ArrayList<>();
+        for (String period : periods) {
+            list.add(period);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.Page;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import hudson.model.FreeStyleProject;
+import hudson.model.listeners.ItemListener;
+import hudson.security.csrf.DefaultCrumbIssuer;
+import java.net.URL;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ * @author jlr
+ */
+public class GXSNotifyCommitActionTest {
+
+    private static final String SERVER_URL = "https://gxserver.example.com/v15";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private JenkinsRule.WebClient webClient;
+
+    @Before
+    public void setUp() {
+        // the default of new installs
+        j.jenkins.setCrumbIssuer(new DefaultCrumbIssuer(false));
+        webClient = j.createWebClient();
+        webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
+    }
+
+    @Test
+    public void acceptsPostWithoutCrumb() throws Exception {
+        Page page = notifyCommit("POST", "UnknownKB");
+        assertEquals(200, page.getWebResponse().getStatusCode());
+        assertEquals("Scheduled polling of 0 job(s)", page.getWebResponse().getContentAsString().trim());
+    }
+
+    @Test
+    public void rejectsGet() throws Exception {
+        assertEquals(405, notifyCommit("GET", "UnknownKB").getWebResponse().getStatusCode());
+    }
+
+    @Test
+    public void rejectsMissingParameters() throws Exception {
+        assertEquals(400, notifyCommit("POST", "").getWebResponse().getStatusCode());
+    }
+
+    @Test
+    public void limitsNotificationsOfSameKbVersion() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.setScm(new GeneXusServerSCM(null, SERVER_URL, null, "LimitedKB", "", "", "", null, "", true));
+        ItemListener.fireOnUpdated(project);
+
+        assertEquals(200, notifyCommit("POST", "LimitedKB").getWebResponse().getStatusCode());
+        assertEquals(429, notifyCommit("POST", "LimitedKB").getWebResponse().getStatusCode());
+
+        // other KBs are not affected
+        assertEquals(200, notifyCommit("POST", "UnknownKB").getWebResponse().getStatusCode());
+    }
+
+    private Page notifyCommit(String method, String kbName) throws Exception {
+        URL url = new URL(j.getURL(), "genexus-server/notifyCommit?serverURL=" + SERVER_URL + "&kbName=" + kbName);
+        return webClient.getPage(new WebRequest(url, HttpMethod.valueOf(method)));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author jlr
+ */
+public class GXSRevisionCacheTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toMillis(1);
+    private static final AtomicInteger KB_COUNT = new AtomicInteger();
+
+    /**
+     * A KB of its own for each test, as the cache is shared.
+     */
+    private final GXSConnection gxs = connection("credentials");
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sharesInFlightLookup() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GXSInfo info = info(gxs, 10);
+
+        Future<GXSInfo> first = executor.submit(() -> GXSRevisionCache.getLastRevision(gxs, null, TTL, () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return info;
+        }));
+        started.await();
+
+        Future<GXSInfo> second = executor.submit(() -> GXSRevisionCache.getLastRevision(gxs, null, TTL, this::load));
+        release.countDown();
+
+        assertSame(info, first.get(10, TimeUnit.SECONDS));
+        assertSame(info, second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void reusesResultUntilItExpires() throws Exception {
+        GXSInfo info = GXSRevisionCache.getLastRevision(gxs, null, TTL, this::load);
+        assertSame(info, GXSRevisionCache.getLastRevision(gxs, null, TTL, this::load));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(20);
+        GXSRevisionCache.getLastRevision(gxs, null, 10, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void zeroTtlDisablesTheCache() throws Exception {
+        GXSRevisionCache.getLastRevision(gxs, null, 0, this::load);
+        GXSRevisionCache.getLastRevision(gxs, null, 0, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void doesNotKeepFailures() throws Exception {
+        try {
+            GXSRevisionCache.getLastRevision(gxs, null, TTL, () -> {
+                loads.incrementAndGet();
+                throw new IOException("GXserver is down");
+            });
+            fail("The failure should be thrown");
+        } catch (IOException ex) {
+            assertEquals("GXserver is down", ex.getMessage());
+        }
+
+        GXSRevisionCache.getLastRevision(gxs, null, TTL, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void doesNotShareLookupsAmongCredentials() throws Exception {
+        GXSConnection other = new GXSConnection(gxs.getServerURL(), "other credentials", gxs.getKbName(), gxs.getKbVersion());
+
+        GXSRevisionCache.getLastRevision(gxs, null, TTL, this::load);
+        GXSRevisionCache.getLastRevision(other, null, TTL, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void lookupFromLaterDateIsNotUsedForEarlierOne() throws Exception {
+        Date now = new Date();
+        Date earlier = new Date(now.getTime() - TTL);
+
+        // nothing found since now doesn't mean nothing since earlier
+        GXSRevisionCache.getLastRevision(gxs, now, TTL, () -> info(gxs, 0));
+        GXSRevisionCache.getLastRevision(gxs, earlier, TTL, this::load);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void resultAgesFromStartOfLookup() throws Exception {
+        GXSRevisionCache.getLastRevision(gxs, null, TTL, () -> {
+            Thread.sleep(50);
+            return info(gxs, 5);
+        });
+        GXSRevisionCache.getLastRevision(gxs, null, 40, this::load);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void keepsResultThatIncludesNotifiedCommit() throws Exception {
+        GXSRevisionCache.getLastRevision(gxs, null, TTL, () -> info(gxs, 5));
+        GXSRevisionCache.invalidate(gxs, 5, 0);
+        GXSRevisionCache.getLastRevision(gxs, null, TTL, this::load);
+        assertEquals(0, loads.get());
+
+        GXSRevisionCache.invalidate(gxs, 6, 0);
+        GXSRevisionCache.getLastRevision(gxs, null, TTL, this::load);
+        assertEquals(1, loads.get());
+    }
+
+    private GXSInfo load() {
+        loads.incrementAndGet();
+        return info(gxs, 1);
+    }
+
+    private static GXSInfo info(GXSConnection gxs, long revision) {
+        return new GXSInfo(gxs, revision, new Date());
+    }
+
+    private static GXSConnection connection(String credentialsId) {
+        return new GXSConnection("https://gxserver.example.com/v15", credentialsId, "KB" + KB_COUNT.incrementAndGet(), "Trunk");
+    }
+}
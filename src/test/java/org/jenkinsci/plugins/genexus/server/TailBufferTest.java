@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ * @author jlr
+ */
+public class TailBufferTest {
+
+    @Test
+    public void keepsEverythingWhileItFits() {
+        TailBuffer tail = new TailBuffer(10);
+        write(tail, "0123456789");
+        assertEquals("0123456789", tail.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsLastBytesOfChunkedWrites() {
+        TailBuffer tail = new TailBuffer(4);
+        write(tail, "012");
+        write(tail, "345");
+        write(tail, "6789");
+        assertEquals("(6 bytes omitted)\n6789", tail.toString(StandardCharsets.UTF_8));
+
+        write(tail, "ab");
+        assertEquals("(8 bytes omitted)\n89ab", tail.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsLastBytesOfSingleByteWrites() {
+        TailBuffer tail = new TailBuffer(4);
+        for (byte b : "0123456789".getBytes(StandardCharsets.UTF_8)) {
+            tail.write(b);
+        }
+        assertEquals("(6 bytes omitted)\n6789", tail.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsEndOfWritesLargerThanCapacity() {
+        TailBuffer tail = new TailBuffer(4);
+        write(tail, "ab");
+        write(tail, "0123456789");
+        assertEquals("(8 bytes omitted)\n6789", tail.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writesOnlyTheGivenRange() {
+        TailBuffer tail = new TailBuffer(4);
+        byte[] bytes = "0123456789".getBytes(StandardCharsets.UTF_8);
+        tail.write(bytes, 2, 3);
+        tail.write(bytes, 7, 3);
+        assertEquals("(2 bytes omitted)\n4789", tail.toString(StandardCharsets.UTF_8));
+    }
+
+    private static void write(TailBuffer tail, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        tail.write(bytes, 0, bytes.length);
+    }
+}
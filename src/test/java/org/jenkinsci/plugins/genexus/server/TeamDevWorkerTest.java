@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 GeneXus S.A..
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.genexus.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author jlr
+ */
+public class TeamDevWorkerTest {
+
+    private static final int REQUESTS = 6;
+
+    @Test
+    public void runsNoMoreProcessesThanTheLimit() throws Exception {
+        assertEquals(2, runConcurrently(new TeamDevWorker.Options(2, 0)));
+    }
+
+    @Test
+    public void runsEveryProcessRightAwayWithNoLimit() throws Exception {
+        assertTrue(runConcurrently(new TeamDevWorker.Options(0, 0)) > 2);
+    }
+
+    @Test
+    public void replacesTheQueueWhenTheLimitChanges() throws Exception {
+        assertEquals(1, runConcurrently(new TeamDevWorker.Options(1, 0)));
+        assertEquals(3, runConcurrently(new TeamDevWorker.Options(3, 0)));
+    }
+
+    @Test
+    public void killsProcessesThatDontFinishInTime() throws Exception {
+        ProcessBuilder procBuilder = FakeTeamDev.command();
+        procBuilder.environment().put(FakeTeamDev.SLEEP, "60");
+
+        long start = System.nanoTime();
+        int exitCode = TeamDevWorker.run(procBuilder, new TeamDevWorker.Options(0, 500), Process::waitFor);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNotEquals(0, exitCode);
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 30000);
+    }
+
+    @Test
+    public void killsQueuedProcessesThatDontFinishInTime() throws Exception {
+        ProcessBuilder procBuilder = FakeTeamDev.command();
+        procBuilder.environment().put(FakeTeamDev.SLEEP, "60");
+
+        int exitCode = TeamDevWorker.run(procBuilder, new TeamDevWorker.Options(1, 500), Process::waitFor);
+
+        assertNotEquals(0, exitCode);
+    }
+
+    @Test
+    public void returnsWhatTheHandlerReturns() throws Exception {
+        ProcessBuilder procBuilder = FakeTeamDev.command("history", "/x");
+        procBuilder.environment().put(FakeTeamDev.EXIT, "3");
+
+        assertEquals(3, (int) TeamDevWorker.run(procBuilder, TeamDevWorker.Options.DEFAULT, Process::waitFor));
+    }
+
+    @Test(expected = IOException.class)
+    public void failsWhenTeamDevIsMissing() throws Exception {
+        File missing = new File(System.getProperty("java.io.tmpdir"), "missing-teamdev/teamdev.exe").getAbsoluteFile();
+        TeamDevWorker.run(new ProcessBuilder(missing.getPath()), new TeamDevWorker.Options(1, 0), Process::waitFor);
+    }
+
+    /**
+     * Runs several requests at the same time, each one waiting a second
+     * before finishing.
+     *
+     * @return the max number of processes that were running at the same time
+     */
+    private static int runConcurrently(TeamDevWorker.Options options) throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        ExecutorService requests = Executors.newFixedThreadPool(REQUESTS);
+        try {
+            List<Future<Integer>> exitCodes = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                exitCodes.add(requests.submit(() -> {
+                    ProcessBuilder procBuilder = FakeTeamDev.command();
+                    procBuilder.environment().put(FakeTeamDev.SLEEP, "1");
+                    return TeamDevWorker.run(procBuilder, options, (proc) -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            return proc.waitFor();
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    });
+                }));
+            }
+
+            for (Future<Integer> exitCode : exitCodes) {
+                assertEquals(0, (int) exitCode.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            requests.shutdownNow();
+        }
+
+        return maxRunning.get();
+    }
+}
@@ -0,0 +1,15 @@
+@echo off
+rem Fake TeamDev, to run the plugin where GeneXus is not installed (eg: tests).
+rem To use it from the plugin, point the
+rem org.jenkinsci.plugins.genexus.helpers.TeamDevArgumentListBuilder.executable
+rem system property to it on the node that runs TeamDev.
+rem
+rem Arguments are ignored. What it does is set through environment variables:
+rem   FAKE_TEAMDEV_OUTPUT  file written to the standard output (eg: a history)
+rem   FAKE_TEAMDEV_SLEEP   seconds to wait before exiting
+rem   FAKE_TEAMDEV_EXIT    exit code, 0 if not set
+
+if defined FAKE_TEAMDEV_OUTPUT type "%FAKE_TEAMDEV_OUTPUT%"
+if defined FAKE_TEAMDEV_SLEEP powershell -NoProfile -Command "Start-Sleep -Seconds %FAKE_TEAMDEV_SLEEP%" > nul 2>&1
+if defined FAKE_TEAMDEV_EXIT exit /b %FAKE_TEAMDEV_EXIT%
+exit /b 0
@@ -0,0 +1,21 @@
+#!/bin/sh
+# Fake TeamDev, to run the plugin where GeneXus is not installed (eg: tests).
+# To use it from the plugin, make it executable and point the
+# org.jenkinsci.plugins.genexus.helpers.TeamDevArgumentListBuilder.executable
+# system property to it on the node that runs TeamDev.
+#
+# Arguments are ignored. What it does is set through environment variables:
+#   FAKE_TEAMDEV_OUTPUT  file written to the standard output (eg: a history)
+#   FAKE_TEAMDEV_SLEEP   seconds to wait before exiting
+#   FAKE_TEAMDEV_EXIT    exit code, 0 if not set
+
+if [ -n "$FAKE_TEAMDEV_OUTPUT" ]; then
+    cat "$FAKE_TEAMDEV_OUTPUT"
+fi
+
+if [ -n "$FAKE_TEAMDEV_SLEEP" ]; then
+    # not on our output, so that it's closed when this process is killed
+    sleep "$FAKE_TEAMDEV_SLEEP" > /dev/null 2>&1
+fi
+
+exit "${FAKE_TEAMDEV_EXIT:-0}"